@@ -78,28 +78,41 @@ app.post('/logIn', function(request, response){
 });
 
 
-// get POST to validate the credentials for a stream
-app.post('/validateCredentials', function(request, response){
+// validates the credentials of a single request body
+function validate(body){
 
     console.log('\n\nvalidate credentials called');
-	console.log('type: '+request.body.type);
-    console.log('username: '+request.body.username);
-    console.log('password: '+request.body.password);
-	console.log('streamID: '+request.body.streamID);
+	console.log('type: '+body.type);
+    console.log('username: '+body.username);
+    console.log('password: '+body.password);
+	console.log('streamID: '+body.streamID);
     if (useToken)
-        console.log('token: '+request.body.token);
+        console.log('token: '+body.token);
 
-	var type = request.body.type;
+	var type = body.type;
 	
 	if (type == "publisher")
-		response.send(JSON.stringify({"result":true,"url":optionalURLResource}));
+		return {"result":true,"url":optionalURLResource};
 	else if (type == "subscriber")
-		response.send(JSON.stringify({"result":true}));
+		return {"result":true};
 	else
 	{
 		console.log('invalid type supplied');
-		response.send(JSON.stringify({"result":false}));
+		return {"result":false};
 	}
+}
+
+// get POST to validate the credentials for a stream
+app.post('/validateCredentials', function(request, response){
+
+	response.send(JSON.stringify(validate(request.body)));
+});
+
+// get POST to validate a batch of credentials, results are returned in the same order
+app.post('/validateCredentialsBatch', function(request, response){
+
+    console.log('\n\nvalidate credentials batch called, size: '+request.body.length);
+	response.send(JSON.stringify(request.body.map(validate)));
 });
 
 // get POST to invalidate the credentials for a stream
@@ -116,6 +129,18 @@ app.post('/invalidateCredentials', function(request, response){
 	
 });
 
+// get POST to invalidate a batch of credentials
+app.post('/invalidateCredentialsBatch', function(request, response){
+
+    console.log('\n\ninvalidate credentials batch called, size: '+request.body.length);
+	request.body.forEach(function(body){
+		console.log('username: '+body.username+' streamID: '+body.streamID);
+	});
+	
+	response.send(JSON.stringify({"result":true}));
+	
+});
+
 
 app.listen(port,host);
 
@@ -60,7 +60,7 @@ public class AppEventMonitor implements IApplication {
     /**
      * The authentication provider
      */
-    AuthenticatorProvider provider;
+    volatile AuthenticatorProvider provider;
 
     /**
      * Stores reference to the scope that this class monitors
@@ -90,6 +90,17 @@ public class AppEventMonitor implements IApplication {
         this.scope = scope;
     }
 
+    /**
+     * Replaces the authentication provider; connects in progress finish with the
+     * previous one.
+     *
+     * @param provider
+     *            The authentication provider object reference
+     */
+    public void setProvider(AuthenticatorProvider provider) {
+        this.provider = provider;
+    }
+
     @Override
     public boolean appStart(IScope app) {
         if (scope == null) {
@@ -158,6 +158,28 @@ public class Configuration {
      */
     private boolean allowedRtmpAgentsUpdated;
 
+    /**
+     * Enables rejecting unknown usernames before the validator is consulted
+     */
+    private boolean usernamePrefilter;
+
+    /**
+     * Property to check if the <code>usernamePrefilter</code> property was
+     * changed beyond its default value
+     */
+    private boolean usernamePrefilterUpdated;
+
+    /**
+     * Path of a file listing the known usernames, one per line. When not set the
+     * usernames are taken from the validator.
+     */
+    private String usernamePrefilterFile;
+
+    /**
+     * False positive rate of the username prefilter
+     */
+    private double usernamePrefilterFalsePositiveRate = 0.01;
+
     /**
      * Property to reference the authentication validator.
      */
@@ -418,6 +440,64 @@ public class Configuration {
         this.allowedRtmpAgentsUpdated = true;
     }
 
+    /**
+     * Returns the value of <code>usernamePrefilter</code>
+     *
+     * @return true if unknown usernames are rejected before validation
+     */
+    public boolean isUsernamePrefilter() {
+        return usernamePrefilter;
+    }
+
+    /**
+     * Sets the value of <code>usernamePrefilter</code>
+     *
+     * @param usernamePrefilter
+     *            The boolean value to set
+     */
+    public void setUsernamePrefilter(boolean usernamePrefilter) {
+        this.usernamePrefilter = usernamePrefilter;
+        this.usernamePrefilterUpdated = true;
+    }
+
+    /**
+     * Returns the value of <code>usernamePrefilterFile</code>
+     *
+     * @return path of the usernames file or null to use the validator
+     */
+    public String getUsernamePrefilterFile() {
+        return usernamePrefilterFile;
+    }
+
+    /**
+     * Sets the value of <code>usernamePrefilterFile</code>
+     *
+     * @param usernamePrefilterFile
+     *            Path of the usernames file
+     */
+    public void setUsernamePrefilterFile(String usernamePrefilterFile) {
+        this.usernamePrefilterFile = usernamePrefilterFile;
+    }
+
+    /**
+     * Returns the value of <code>usernamePrefilterFalsePositiveRate</code>
+     *
+     * @return the false positive rate
+     */
+    public double getUsernamePrefilterFalsePositiveRate() {
+        return usernamePrefilterFalsePositiveRate;
+    }
+
+    /**
+     * Sets the value of <code>usernamePrefilterFalsePositiveRate</code>
+     *
+     * @param usernamePrefilterFalsePositiveRate
+     *            The false positive rate, between 0 and 1
+     */
+    public void setUsernamePrefilterFalsePositiveRate(double usernamePrefilterFalsePositiveRate) {
+        this.usernamePrefilterFalsePositiveRate = usernamePrefilterFalsePositiveRate;
+    }
+
     /**
      * Returns the value of <code>rtmpUpdated</code>
      *
@@ -508,6 +588,16 @@ public class Configuration {
         return allowedRtmpAgentsUpdated;
     }
 
+    /**
+     * Returns the value of <code>usernamePrefilterUpdated</code>
+     *
+     * @return true if the username prefilter state was changed beyond default
+     *         otherwise false
+     */
+    protected boolean isUsernamePrefilterUpdated() {
+        return usernamePrefilterUpdated;
+    }
+
     /**
      * Returns the value of <code>activeUpdated</code>
      *
@@ -33,10 +33,10 @@ import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.red5.server.adapter.IApplication;
 import org.red5.server.adapter.MultiThreadedApplicationAdapter;
@@ -123,14 +123,27 @@ public class SimpleAuthPlugin extends Red5Plugin {
     private String defaultAuthValidatorDataSource = "simple-auth-plugin.credentials";
 
     /**
-     * Map to contain AuthenticatorProvider reference for each application scope
+     * Validators shared between scopes with the same data source
      */
-    private Map<String, AuthenticatorProvider> scopeAuthenticationProviders = new HashMap<>();
+    private ValidatorRegistry validatorRegistry = new ValidatorRegistry();
+
+    /**
+     * Map to contain the validator acquired from the registry for each
+     * application scope
+     */
+    private Map<String, IAuthenticationValidator> scopeValidators = new ConcurrentHashMap<>();
+
+    /**
+     * Map to contain AuthenticatorProvider reference for each application scope.
+     * Read without locking on request threads; changes are made while holding
+     * the plugin's lock, as scopes are created, configured and removed.
+     */
+    private Map<String, AuthenticatorProvider> scopeAuthenticationProviders = new ConcurrentHashMap<>();
 
     /**
      * Map to contain IApplication reference for each application scope
      */
-    private Map<String, IApplication> appHandlerDelegates = new HashMap<>();
+    private Map<String, IApplication> appHandlerDelegates = new ConcurrentHashMap<>();
 
     /**
      * Java bean name required to identify a auth plugin configuration in an
@@ -168,6 +181,7 @@ public class SimpleAuthPlugin extends Red5Plugin {
                 configuration.put("simpleauth.default.ws", "false");
                 configuration.put("simpleauth.default.rtmp.queryparams", "true");
                 configuration.put("simpleauth.default.rtmp.agents", "*");
+                configuration.put("simpleauth.default.prefilter", "false");
                 // creates a new configuration properties file
                 addConfResource(configuration, configurationFile, "SimpleAuth Properties\n");
             } else {
@@ -238,6 +252,12 @@ public class SimpleAuthPlugin extends Red5Plugin {
             if (log.isDebugEnabled()) {
                 log.debug("allowedRtmpAgents {}", allowedRtmpAgents);
             }
+
+            boolean usernamePrefilter = Boolean.parseBoolean(configuration.getProperty("simpleauth.default.prefilter"));
+            String usernamePrefilterFile = configuration.getProperty("simpleauth.default.prefilter.file");
+            if (log.isDebugEnabled()) {
+                log.debug("usernamePrefilter {} file {}", usernamePrefilter, usernamePrefilterFile);
+            }
             // Prepare default validator
             Resource fileDataSource = getConfResource(context, defaultAuthValidatorDataSource);
             if (!fileDataSource.exists()) {
@@ -249,8 +269,8 @@ public class SimpleAuthPlugin extends Red5Plugin {
                 fileDataSource = getConfResource(context, defaultAuthValidatorDataSource);
             }
             // default credentials file
-            defaultAuthValidator = new Red5ProFileAuthenticationValidator(fileDataSource.getFile().getAbsolutePath());
-            defaultAuthValidator.initialize();
+            defaultAuthValidator = validatorRegistry.acquire(Red5ProFileAuthenticationValidator.class, fileDataSource.getFile(),
+                    Red5ProFileAuthenticationValidator::new);
 
             // default configuration
             defaultConfiguration = new Configuration();
@@ -264,6 +284,8 @@ public class SimpleAuthPlugin extends Red5Plugin {
             defaultConfiguration.setWs(wsSecurityEnabled);
             defaultConfiguration.setRtmpAllowQueryParamsEnabled(rtmpAllowQueryParams);
             defaultConfiguration.setAllowedRtmpAgents(allowedRtmpAgents);
+            defaultConfiguration.setUsernamePrefilter(usernamePrefilter);
+            defaultConfiguration.setUsernamePrefilterFile(usernamePrefilterFile);
             defaultConfiguration.setActive(defaultActive);
 
             // prepare default authentication provider
@@ -385,6 +407,10 @@ public class SimpleAuthPlugin extends Red5Plugin {
     @Override
     public void doStop() throws Exception {
         log.info("Stop plugin");
+        if (defaultAuthProvider != null) {
+            defaultAuthProvider.close();
+        }
+        validatorRegistry.clear();
     }
 
     /**
@@ -433,9 +459,7 @@ public class SimpleAuthPlugin extends Red5Plugin {
             IGlobalScope gscope = inter.next();
             IScope scope = (IScope) gscope.getBasicScope(ScopeType.APPLICATION, scopeName);
             if (scope != null) {
-                // clean up existing entry
-                cleanUp(scope);
-                // configure the scope as specified
+                // configure the scope as specified, replacing the existing entry in place
                 configureScope(scope, configuration);
                 // return true; break out
                 return true;
@@ -500,7 +524,7 @@ public class SimpleAuthPlugin extends Red5Plugin {
     }
 
     public void setScopeAuthenticationProviders(Map<String, AuthenticatorProvider> scopeAuthenticationProviders) {
-        this.scopeAuthenticationProviders = scopeAuthenticationProviders;
+        this.scopeAuthenticationProviders = new ConcurrentHashMap<>(scopeAuthenticationProviders);
     }
 
     public Configuration getDefaultConfiguration() {
@@ -547,7 +571,7 @@ public class SimpleAuthPlugin extends Red5Plugin {
      * @param scope
      * @param context
      */
-    private void configureContext(IScope scope, IContext context) {
+    private synchronized void configureContext(IScope scope, IContext context) {
         final String scopeName = scope.getName();
         log.debug("No custom override for scope {}", scopeName);
         final MultiThreadedApplicationAdapter adapter = (MultiThreadedApplicationAdapter) scope.getHandler();
@@ -569,7 +593,7 @@ public class SimpleAuthPlugin extends Red5Plugin {
      * @param scope
      * @param context
      */
-    private void configureCustomContext(IScope scope, IContext context) {
+    synchronized void configureCustomContext(IScope scope, IContext context) {
         final String scopeName = scope.getName();
         log.debug("Custom override for scope {}", scopeName);
         final MultiThreadedApplicationAdapter adapter = (MultiThreadedApplicationAdapter) scope.getHandler();
@@ -643,6 +667,15 @@ public class SimpleAuthPlugin extends Red5Plugin {
             } else {
                 scopeAuthProvider.setAllowedRtmpAgents(defaultConfiguration.getAllowedRtmpAgents());
             }
+            if (simpleAuthCustom.isUsernamePrefilterUpdated()) {
+                scopeAuthProvider.setUsernamePrefilter(simpleAuthCustom.isUsernamePrefilter());
+                scopeAuthProvider.setUsernamePrefilterFile(simpleAuthCustom.getUsernamePrefilterFile());
+                scopeAuthProvider.setUsernamePrefilterFalsePositiveRate(simpleAuthCustom.getUsernamePrefilterFalsePositiveRate());
+            } else {
+                scopeAuthProvider.setUsernamePrefilter(defaultConfiguration.isUsernamePrefilter());
+                scopeAuthProvider.setUsernamePrefilterFile(defaultConfiguration.getUsernamePrefilterFile());
+            }
+            scopeAuthProvider.setName(scopeName);
             // initialize the scope authenticator
             scopeAuthProvider.initialize();
             if (log.isDebugEnabled()) {
@@ -680,7 +713,7 @@ public class SimpleAuthPlugin extends Red5Plugin {
      * @param scope
      * @param configuration
      */
-    private void configureScope(IScope scope, Properties configuration) {
+    private synchronized void configureScope(IScope scope, Properties configuration) {
         final String scopeName = scope.getName();
         log.debug("Configure scope {} with {}", scopeName, configuration);
         // get the app context so we can write the configuration
@@ -712,6 +745,9 @@ public class SimpleAuthPlugin extends Red5Plugin {
         log.debug("rtmpAllowQueryParams {}", rtmpAllowQueryParams);
         String allowedRtmpAgents = configuration.getProperty("simpleauth.default.rtmp.agents", "*");
         log.debug("allowedRtmpAgents {}", allowedRtmpAgents);
+        boolean usernamePrefilter = Boolean.parseBoolean(configuration.getProperty("simpleauth.default.prefilter"));
+        String usernamePrefilterFile = configuration.getProperty("simpleauth.default.prefilter.file");
+        log.debug("usernamePrefilter {} file {}", usernamePrefilter, usernamePrefilterFile);
         // Prepare the scope validator
         Resource fileDataSource = getConfResource(context, authValidatorDataSource);
         if (!fileDataSource.exists()) {
@@ -724,8 +760,9 @@ public class SimpleAuthPlugin extends Red5Plugin {
         }
         IAuthenticationValidator authValidator;
         try {
-            authValidator = new Red5ProFileAuthenticationValidator(fileDataSource.getFile().getAbsolutePath());
-            authValidator.initialize();
+            // scopes with the same credentials file share one validator
+            authValidator = validatorRegistry.acquire(Red5ProFileAuthenticationValidator.class, fileDataSource.getFile(),
+                    Red5ProFileAuthenticationValidator::new);
             // default configuration
             Configuration scopeConfiguration = new Configuration();
             scopeConfiguration.setValidator(authValidator);
@@ -738,21 +775,46 @@ public class SimpleAuthPlugin extends Red5Plugin {
             scopeConfiguration.setWs(wsSecurityEnabled);
             scopeConfiguration.setRtmpAllowQueryParamsEnabled(rtmpAllowQueryParams);
             scopeConfiguration.setAllowedRtmpAgents(allowedRtmpAgents);
+            scopeConfiguration.setUsernamePrefilter(usernamePrefilter);
+            scopeConfiguration.setUsernamePrefilterFile(usernamePrefilterFile);
             scopeConfiguration.setActive(active);
+            AuthenticatorProvider existing = scopeAuthenticationProviders.get(scopeName);
+            IApplication existingDelegate = appHandlerDelegates.get(scopeName);
+            if (existing != null && existing != defaultAuthProvider) {
+                // the scope has its own provider, swap the new configuration in
+                existing.reconfigure(scopeConfiguration);
+                IAuthenticationValidator previous = scopeValidators.put(scopeName, authValidator);
+                if (previous != null) {
+                    validatorRegistry.release(previous);
+                }
+                return;
+            }
             // prepare default authentication provider
             AuthenticatorProvider scopeAuthProvider = new AuthenticatorProvider(scopeConfiguration);
+            scopeAuthProvider.setName(scopeName);
             scopeAuthProvider.initialize();
             scopeAuthProvider.setEnabled(scopeConfiguration.isActive());
+            if (existing != null && existingDelegate instanceof AppEventMonitor) {
+                // the scope shares the default provider, point its handler at its own
+                scopeAuthenticationProviders.put(scopeName, scopeAuthProvider);
+                scopeValidators.put(scopeName, authValidator);
+                ((AppEventMonitor) existingDelegate).setProvider(scopeAuthProvider);
+                return;
+            }
             // Register the custom auth provider configuration
             MultiThreadedApplicationAdapter adapter = (MultiThreadedApplicationAdapter) scope.getHandler();
             if (adapter != null) {
                 log.debug("Registering application event handler for {}", scopeName);
                 scopeAuthenticationProviders.put(scopeName, scopeAuthProvider);
+                scopeValidators.put(scopeName, authValidator);
 
                 IApplication delegate = new AppEventMonitor(scopeAuthProvider, scope);
                 appHandlerDelegates.put(scopeName, delegate);
 
                 adapter.addListener(delegate);
+            } else {
+                scopeAuthProvider.close();
+                validatorRegistry.release(authValidator);
             }
         } catch (IOException e) {
             log.warn("Authentication configuration of {} failed", scopeName, e);
@@ -764,14 +826,19 @@ public class SimpleAuthPlugin extends Red5Plugin {
      *
      * @param scope
      */
-    private void cleanUp(IScope scope) {
+    synchronized void cleanUp(IScope scope) {
         final String scopeName = scope.getName();
         log.debug("Cleaning up scope {}", scopeName);
         // Deregister AuthenticatorProvider
-        if (scopeAuthenticationProviders.containsKey(scopeName)) {
-            @SuppressWarnings("unused")
-            AuthenticatorProvider provider = scopeAuthenticationProviders.remove(scopeName);
-            provider = null;
+        AuthenticatorProvider provider = scopeAuthenticationProviders.remove(scopeName);
+        // the default provider is shared by all scopes without an override
+        if (provider != null && provider != defaultAuthProvider) {
+            provider.close();
+        }
+        // Release the scope's validator, closing it if no other scope uses it
+        IAuthenticationValidator validator = scopeValidators.remove(scopeName);
+        if (validator != null) {
+            validatorRegistry.release(validator);
         }
         // Deregister IApplication delegate
         if (appHandlerDelegates.containsKey(scopeName)) {
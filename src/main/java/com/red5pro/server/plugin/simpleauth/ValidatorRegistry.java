@@ -0,0 +1,143 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
+
+/**
+ * Reference counted registry of validators keyed on validator type and the
+ * canonical path of their data source, so that scopes configured with the same
+ * data source share one validator and one loaded copy of the data. A validator
+ * is closed when the last reference to it is released.
+ */
+public class ValidatorRegistry {
+
+    private static Logger log = LoggerFactory.getLogger(ValidatorRegistry.class);
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Returns the validator of the given type for a data source, creating and
+     * initializing it if it is not registered yet, and adds a reference to it.
+     *
+     * @param type
+     *            the validator type
+     * @param dataSource
+     *            the data source file
+     * @param factory
+     *            creates a validator from the canonical data source path
+     * @return the shared validator
+     * @throws IOException
+     *             if the canonical path of the data source cannot be resolved
+     */
+    public synchronized IAuthenticationValidator acquire(Class<? extends IAuthenticationValidator> type, File dataSource,
+            Function<String, IAuthenticationValidator> factory) throws IOException {
+        String path = dataSource.getCanonicalPath();
+        String key = type.getName() + '|' + path;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            IAuthenticationValidator validator = factory.apply(path);
+            validator.initialize();
+            entry = new Entry(validator);
+            entries.put(key, entry);
+            log.debug("Registered validator {} for {}", type.getSimpleName(), path);
+        }
+        entry.references++;
+        return entry.validator;
+    }
+
+    /**
+     * Removes a reference to a validator, closing it when no references remain.
+     * Validators not acquired from the registry are ignored.
+     *
+     * @param validator
+     *            the validator
+     */
+    public synchronized void release(IAuthenticationValidator validator) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.validator == validator) {
+                if (--entry.references == 0) {
+                    it.remove();
+                    close(validator);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases all validators regardless of their references.
+     */
+    public synchronized void clear() {
+        entries.values().forEach(entry -> close(entry.validator));
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of registered validators.
+     *
+     * @return validator count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static void close(IAuthenticationValidator validator) {
+        if (validator instanceof Closeable) {
+            try {
+                ((Closeable) validator).close();
+            } catch (IOException e) {
+                log.warn("Error closing validator {}", validator, e);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        final IAuthenticationValidator validator;
+
+        int references;
+
+        Entry(IAuthenticationValidator validator) {
+            this.validator = validator;
+        }
+
+    }
+
+}
@@ -25,17 +25,32 @@
 //
 package com.red5pro.server.plugin.simpleauth.datasource.impl;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Enumeration;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.red5.server.api.IContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.red5pro.server.plugin.simpleauth.datasource.impl.file.CredentialStore;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.file.MapCredentialStore;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.file.MappedCredentialStore;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.file.PasswordHash;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.file.VerificationCache;
 import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
+import com.red5pro.server.plugin.simpleauth.interfaces.IUsernameSource;
+import com.red5pro.server.plugin.simpleauth.utils.FileWatcher;
 
 /**
  * This class is a sample implementation of the
@@ -54,12 +69,19 @@ import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
  * provides a means to validate credentials and other parameters.
  *
  * This sample implementation uses filesystem as a data source for validating
- * username/password passed by clients.
+ * username/password passed by clients. The credentials are held in an immutable
+ * store which is replaced as a whole when the file changes, so lookups never
+ * lock. The file may be a text properties file, or a file compiled with the
+ * CredentialFileCompiler which is memory-mapped instead of loaded on the heap.
+ * Passwords may be stored as salted PBKDF2 hashes (see PasswordHash); results
+ * of hash verifications are cached for a while so that reconnecting clients do
+ * not pay for the key derivation again.
  *
  * @author Rajdeep Rath
  *
  */
-public class Red5ProFileAuthenticationValidator implements IAuthenticationValidator {
+public class Red5ProFileAuthenticationValidator
+        implements IAuthenticationValidator, IUsernameSource, Closeable, Red5ProFileAuthenticationValidatorMXBean {
 
     /**
      * Logger
@@ -73,10 +95,15 @@ public class Red5ProFileAuthenticationValidator implements IAuthenticationValida
     private IContext context;
 
     /**
-     * Properties object intended to load the credentials information from
-     * filesystem
+     * Immutable store of the credentials loaded from filesystem, replaced on
+     * reload
+     */
+    private volatile CredentialStore credentials = MapCredentialStore.EMPTY;
+
+    /**
+     * Incremented whenever the credentials are replaced
      */
-    private Properties authInformation;
+    private final AtomicLong credentialsVersion = new AtomicLong();
 
     /**
      * The name or absolute of the properties file resource which contains
@@ -84,6 +111,46 @@ public class Red5ProFileAuthenticationValidator implements IAuthenticationValida
      */
     private String dataSource;
 
+    /**
+     * Whether the credentials file is watched and reloaded when it changes
+     */
+    private boolean watchDataSource = true;
+
+    /**
+     * Watches the credentials file for changes
+     */
+    private FileWatcher watcher;
+
+    /**
+     * Name under which this validator is registered with JMX
+     */
+    private ObjectName objectName;
+
+    /**
+     * Maximum number of cached hash verification results, 0 disables the cache
+     */
+    private int verificationCacheSize = 10000;
+
+    /**
+     * Time in milliseconds a hash verification result is cached
+     */
+    private long verificationCacheTtl = 300000;
+
+    /**
+     * Cache of hash verification results
+     */
+    private VerificationCache verificationCache;
+
+    private final LongAdder hashVerifications = new LongAdder();
+
+    private final LongAdder reloads = new LongAdder();
+
+    private final LongAdder reloadFailures = new LongAdder();
+
+    private volatile long lastReloadDuration;
+
+    private volatile long lastReloadTime;
+
     /**
      * Constructor for Red5ProFileAuthenticationValidator
      */
@@ -120,17 +187,67 @@ public class Red5ProFileAuthenticationValidator implements IAuthenticationValida
 
     @Override
     public void initialize() {
-        loadDataSource();
+        if (verificationCacheSize > 0) {
+            verificationCache = new VerificationCache(verificationCacheSize, verificationCacheTtl);
+        }
+        File propertiesFile = resolveDataSource();
+        if (propertiesFile != null) {
+            loadDataSource(propertiesFile);
+            if (watchDataSource) {
+                try {
+                    watcher = new FileWatcher(propertiesFile.toPath(), () -> loadDataSource(propertiesFile), "CredentialsWatcher");
+                } catch (IOException e) {
+                    logger.warn("Could not watch {} for changes", propertiesFile, e);
+                }
+            }
+            registerJMX(propertiesFile);
+        }
     }
 
     /**
-     * Loads the content of the resource containing authentication information into
-     * memory
+     * Stops watching the credentials file and unregisters from JMX.
      */
-    private void loadDataSource() {
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        if (objectName != null) {
+            try {
+                MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                if (mbs.isRegistered(objectName)) {
+                    mbs.unregisterMBean(objectName);
+                }
+            } catch (Exception e) {
+                logger.warn("Error unregistering validator from JMX", e);
+            }
+            objectName = null;
+        }
+    }
+
+    private void registerJMX(File propertiesFile) {
         try {
-            logger.debug("Loading data source");
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(
+                    String.format("com.red5pro.server.plugin.simpleauth:type=Red5ProFileAuthenticationValidator,name=%s",
+                            ObjectName.quote(propertiesFile.getAbsolutePath())));
+            if (!mbs.isRegistered(name)) {
+                mbs.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (Exception e) {
+            logger.warn("Error registering validator with JMX", e);
+        }
+    }
 
+    /**
+     * Resolves the resource containing authentication information
+     *
+     * @return the file or null if not found
+     */
+    private File resolveDataSource() {
+        try {
             File propertiesFile = null;
 
             if (context != null)
@@ -140,20 +257,45 @@ public class Red5ProFileAuthenticationValidator implements IAuthenticationValida
             if (!propertiesFile.exists())
                 throw new IOException("Datasource not found");
 
-            authInformation = new Properties();
-            authInformation.load(new FileInputStream(propertiesFile));
+            return propertiesFile;
+        } catch (IOException e) {
+            logger.error("Error initializing data source " + e.getMessage());
+        }
+        return null;
+    }
 
-            Enumeration<?> e = authInformation.propertyNames();
-            while (e.hasMoreElements()) {
-                String key = (String) e.nextElement();
-                String value = authInformation.getProperty(key);
-                logger.debug("Key : " + key + ", Value : " + value);
+    /**
+     * Loads the content of the resource containing authentication information into
+     * memory. A compiled credentials file is memory-mapped, a properties file is
+     * parsed into an immutable map. The new credentials replace the current ones
+     * in a single step; if loading fails the current ones are kept.
+     *
+     * @param propertiesFile
+     *            the credentials file
+     */
+    private void loadDataSource(File propertiesFile) {
+        logger.debug("Loading data source");
+        long start = System.nanoTime();
+        try {
+            if (MappedCredentialStore.isCompiled(propertiesFile.toPath())) {
+                credentials = MappedCredentialStore.open(propertiesFile.toPath());
+            } else {
+                Properties properties = new Properties();
+                try (InputStream in = new FileInputStream(propertiesFile)) {
+                    properties.load(in);
+                }
+                credentials = MapCredentialStore.of(properties);
             }
-
+            credentialsVersion.incrementAndGet();
         } catch (IOException e) {
-            e.printStackTrace();
-            logger.error("Error initializing data source " + e.getMessage());
+            reloadFailures.increment();
+            logger.error("Error loading data source " + e.getMessage());
+            return;
         }
+        lastReloadDuration = (System.nanoTime() - start) / 1000000L;
+        lastReloadTime = System.currentTimeMillis();
+        reloads.increment();
+        logger.info("Loaded {} credentials from {} in {} ms", credentials.size(), propertiesFile, lastReloadDuration);
     }
 
     @Override
@@ -162,8 +304,11 @@ public class Red5ProFileAuthenticationValidator implements IAuthenticationValida
             if (logger.isDebugEnabled()) {
                 logger.debug("Authenticating connection for username " + username + " and password " + password);
             }
-            if (authInformation.containsKey(username)) {
-                String pass = String.valueOf(authInformation.getProperty(username));
+            String pass = credentials.getPassword(username);
+            if (pass != null) {
+                if (PasswordHash.isHash(pass)) {
+                    return verifyHash(username, password, pass);
+                }
                 if (pass.equalsIgnoreCase(password)) {
                     return true;
                 }
@@ -174,6 +319,39 @@ public class Red5ProFileAuthenticationValidator implements IAuthenticationValida
         return false;
     }
 
+    /**
+     * Verifies a password against a stored hash, using the cached result of an
+     * earlier verification of the same credentials when there is one.
+     *
+     * @param username
+     *            the username
+     * @param password
+     *            the provided password
+     * @param stored
+     *            the stored hash
+     * @return true if the password matches
+     */
+    private boolean verifyHash(String username, String password, String stored) {
+        if (password == null) {
+            return false;
+        }
+        VerificationCache cache = verificationCache;
+        String key = null;
+        if (cache != null) {
+            key = cache.key(username, password, stored);
+            Boolean verified = cache.get(key);
+            if (verified != null) {
+                return verified;
+            }
+        }
+        hashVerifications.increment();
+        boolean verified = PasswordHash.verify(password, stored);
+        if (cache != null) {
+            cache.put(key, verified);
+        }
+        return verified;
+    }
+
     /**
      * Returns the value of
      *
@@ -208,9 +386,12 @@ public class Red5ProFileAuthenticationValidator implements IAuthenticationValida
      * authInformation
      * </pre>
      *
-     * @return The Properties object containing authentication information
+     * @return A copy of the authentication information
      */
     public Properties getAuthInformation() {
+        CredentialStore store = credentials;
+        Properties authInformation = new Properties();
+        store.forEachUsername(username -> authInformation.setProperty(username, store.getPassword(username)));
         return authInformation;
     }
 
@@ -225,7 +406,90 @@ public class Red5ProFileAuthenticationValidator implements IAuthenticationValida
      *            The Properties object to set
      */
     public void setAuthInformation(Properties authInformation) {
-        this.authInformation = authInformation;
+        credentials = MapCredentialStore.of(authInformation);
+        credentialsVersion.incrementAndGet();
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> action) {
+        credentials.forEachUsername(action);
+    }
+
+    @Override
+    public long getUsernamesVersion() {
+        return credentialsVersion.get();
+    }
+
+    public boolean isWatchDataSource() {
+        return watchDataSource;
+    }
+
+    public void setWatchDataSource(boolean watchDataSource) {
+        this.watchDataSource = watchDataSource;
+    }
+
+    public int getVerificationCacheSize() {
+        return verificationCacheSize;
+    }
+
+    public void setVerificationCacheSize(int verificationCacheSize) {
+        this.verificationCacheSize = verificationCacheSize;
+    }
+
+    public long getVerificationCacheTtl() {
+        return verificationCacheTtl;
+    }
+
+    public void setVerificationCacheTtl(long verificationCacheTtl) {
+        this.verificationCacheTtl = verificationCacheTtl;
+    }
+
+    @Override
+    public int getVerificationCacheEntries() {
+        VerificationCache cache = verificationCache;
+        return (cache != null) ? cache.size() : 0;
+    }
+
+    @Override
+    public long getVerificationCacheHits() {
+        VerificationCache cache = verificationCache;
+        return (cache != null) ? cache.getHits() : 0;
+    }
+
+    @Override
+    public long getVerificationCacheMisses() {
+        VerificationCache cache = verificationCache;
+        return (cache != null) ? cache.getMisses() : 0;
+    }
+
+    @Override
+    public long getHashVerifications() {
+        return hashVerifications.sum();
+    }
+
+    @Override
+    public int getCredentialCount() {
+        return credentials.size();
+    }
+
+    @Override
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    @Override
+    public long getReloadFailures() {
+        return reloadFailures.sum();
+    }
+
+    @Override
+    public long getLastReloadDuration() {
+        return lastReloadDuration;
+    }
+
+    @Override
+    public long getLastReloadTime() {
+        return lastReloadTime;
     }
 
     /**
@@ -0,0 +1,99 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl;
+
+/**
+ * JMX management interface exposing the credential store statistics of a
+ * Red5ProFileAuthenticationValidator.
+ */
+public interface Red5ProFileAuthenticationValidatorMXBean {
+
+    /**
+     * Returns the number of credentials currently loaded.
+     *
+     * @return credential count
+     */
+    int getCredentialCount();
+
+    /**
+     * Returns the number of times the credentials file was loaded.
+     *
+     * @return reload count
+     */
+    long getReloadCount();
+
+    /**
+     * Returns the number of times loading the credentials file failed.
+     *
+     * @return reload failures
+     */
+    long getReloadFailures();
+
+    /**
+     * Returns the time in milliseconds the last load of the credentials file took.
+     *
+     * @return reload duration
+     */
+    long getLastReloadDuration();
+
+    /**
+     * Returns the time the credentials file was last loaded, in milliseconds since
+     * the epoch.
+     *
+     * @return reload time
+     */
+    long getLastReloadTime();
+
+    /**
+     * Returns the number of cached hash verification results.
+     *
+     * @return cache entries
+     */
+    int getVerificationCacheEntries();
+
+    /**
+     * Returns the number of hash verifications answered from the cache.
+     *
+     * @return cache hits
+     */
+    long getVerificationCacheHits();
+
+    /**
+     * Returns the number of hash verifications not found in the cache.
+     *
+     * @return cache misses
+     */
+    long getVerificationCacheMisses();
+
+    /**
+     * Returns the number of times a password hash was derived to verify a
+     * password.
+     *
+     * @return hash verifications
+     */
+    long getHashVerifications();
+
+}
@@ -0,0 +1,370 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.file;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Offline compiler turning a text credentials file into the binary format read
+ * by {@link MappedCredentialStore}. The input is read twice, first to size the
+ * output and then to write it, so memory use does not depend on the number of
+ * credentials. The output is written to a temporary file and moved into place,
+ * so a validator watching it only ever sees a complete file.
+ * <p>
+ * The input is parsed like the properties file loaded by the text validator:
+ * it is read as ISO-8859-1, lines hold a username and a password separated by
+ * whitespace, `=` or `:`, blank lines and lines starting with `#` or `!` are
+ * ignored, and backslash escapes (including &#92;uXXXX) and continuation lines
+ * are honored. Both paths therefore yield the same credentials for the same
+ * file. If a username appears more than once, the last entry wins.
+ * </p>
+ *
+ * <pre>
+ * java -cp red5pro-simple-auth-plugin.jar com.red5pro.server.plugin.simpleauth.datasource.impl.file.CredentialFileCompiler \
+ *      simple-auth-plugin.credentials simple-auth-plugin.credentials.bin
+ * </pre>
+ */
+public class CredentialFileCompiler {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CredentialFileCompiler <credentials file> <compiled file>");
+            System.exit(1);
+        }
+        long start = System.currentTimeMillis();
+        int entries = compile(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("Compiled " + entries + " credentials into " + args[1] + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Compiles a text credentials file.
+     *
+     * @param input
+     *            the text credentials file
+     * @param output
+     *            the compiled file to write
+     * @return number of distinct credentials written
+     * @throws IOException
+     *             if reading or writing fails, or the input is too large
+     */
+    public static int compile(Path input, Path output) throws IOException {
+        // first pass, size the table and the records
+        long lines = 0;
+        long dataSize = 0;
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1)) {
+            LineReader reader = new LineReader(in);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] entry = parse(line);
+                lines++;
+                dataSize += 4 + utf8(entry[0]).length + utf8(entry[1]).length;
+            }
+        }
+        long slotCount = Long.highestOneBit(Math.max(2L, lines * 2 - 1)) << 1;
+        long totalSize = MappedCredentialStore.HEADER_SIZE + slotCount * MappedCredentialStore.SLOT_SIZE + dataSize;
+        if (slotCount > (1 << 30) || totalSize > Integer.MAX_VALUE) {
+            throw new IOException("Too many credentials to compile: " + lines);
+        }
+        int slots = (int) slotCount;
+        int mask = slots - 1;
+        Path temp = output.toAbsolutePath().resolveSibling(output.getFileName() + ".tmp");
+        int entries = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, totalSize);
+            buffer.putInt(0, MappedCredentialStore.MAGIC);
+            buffer.putInt(4, MappedCredentialStore.VERSION);
+            buffer.putInt(8, slots);
+            // second pass, write the records and index them
+            int position = MappedCredentialStore.HEADER_SIZE + slots * MappedCredentialStore.SLOT_SIZE;
+            try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1)) {
+                LineReader reader = new LineReader(in);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] entry = parse(line);
+                    byte[] user = utf8(entry[0]);
+                    byte[] password = utf8(entry[1]);
+                    if (user.length > 0xffff || password.length > 0xffff) {
+                        throw new IOException("Credential too long for user " + entry[0]);
+                    }
+                    int offset = position;
+                    buffer.position(position);
+                    buffer.putShort((short) user.length).put(user).putShort((short) password.length).put(password);
+                    position = buffer.position();
+                    int hash = MappedCredentialStore.hash(user);
+                    int index = hash & mask;
+                    while (true) {
+                        int slot = MappedCredentialStore.HEADER_SIZE + index * MappedCredentialStore.SLOT_SIZE;
+                        int existing = buffer.getInt(slot + 4);
+                        if (existing == 0) {
+                            buffer.putInt(slot, hash);
+                            buffer.putInt(slot + 4, offset);
+                            entries++;
+                            break;
+                        }
+                        if (buffer.getInt(slot) == hash && sameUser(buffer, existing, user)) {
+                            // duplicate username, the later entry replaces the earlier one
+                            buffer.putInt(slot + 4, offset);
+                            break;
+                        }
+                        index = (index + 1) & mask;
+                    }
+                }
+            }
+            buffer.putInt(12, entries);
+            buffer.force();
+        }
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return entries;
+    }
+
+    private static boolean sameUser(MappedByteBuffer buffer, int offset, byte[] user) {
+        if ((buffer.getShort(offset) & 0xffff) != user.length) {
+            return false;
+        }
+        for (int i = 0; i < user.length; i++) {
+            if (buffer.get(offset + 2 + i) != user[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a logical line into username and password, with the key and
+     * element rules of {@link java.util.Properties#load(java.io.Reader)}.
+     *
+     * @return array of username and password
+     * @throws IOException
+     *             if the line holds a malformed &#92;uXXXX escape
+     */
+    static String[] parse(String line) throws IOException {
+        int length = line.length();
+        int start = skipWhitespace(line, 0);
+        int end = start;
+        boolean escaped = false;
+        while (end < length) {
+            char c = line.charAt(end);
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (isSeparator(c)) {
+                break;
+            }
+            end++;
+        }
+        int value = skipWhitespace(line, end);
+        if (value < length && (line.charAt(value) == '=' || line.charAt(value) == ':')) {
+            value = skipWhitespace(line, value + 1);
+        }
+        return new String[] { unescape(line, start, end), unescape(line, value, length) };
+    }
+
+    private static String unescape(String line, int from, int to) throws IOException {
+        int escape = line.indexOf('\\', from);
+        if (escape < 0 || escape >= to) {
+            return line.substring(from, to);
+        }
+        StringBuilder builder = new StringBuilder(to - from);
+        builder.append(line, from, escape);
+        int i = escape;
+        while (i < to) {
+            char c = line.charAt(i++);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (i == to) {
+                // a trailing backslash on the last line of the file
+                break;
+            }
+            c = line.charAt(i++);
+            switch (c) {
+            case 'u':
+                if (to - i < 4) {
+                    throw new IOException("Malformed \\uxxxx encoding: " + line);
+                }
+                int code = 0;
+                for (int end = i + 4; i < end; i++) {
+                    int digit = Character.digit(line.charAt(i), 16);
+                    if (digit < 0) {
+                        throw new IOException("Malformed \\uxxxx encoding: " + line);
+                    }
+                    code = (code << 4) | digit;
+                }
+                builder.append((char) code);
+                break;
+            case 't':
+                builder.append('\t');
+                break;
+            case 'r':
+                builder.append('\r');
+                break;
+            case 'n':
+                builder.append('\n');
+                break;
+            case 'f':
+                builder.append('\f');
+                break;
+            default:
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int skipWhitespace(String line, int index) {
+        while (index < line.length() && isWhitespace(line.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '=' || c == ':' || isWhitespace(c);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Splits the input into logical lines the way
+     * {@link java.util.Properties#load(java.io.Reader)} does: blank and comment
+     * lines are skipped, leading whitespace is dropped, and a line ending with an
+     * odd number of backslashes continues on the next line, whose leading
+     * whitespace is dropped as well.
+     */
+    static final class LineReader {
+
+        private final Reader in;
+
+        private final char[] buffer = new char[8192];
+
+        private int offset;
+
+        private int limit;
+
+        private char[] line = new char[256];
+
+        LineReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Reads the next logical line, escapes are left in place.
+         *
+         * @return the line, or null at the end of the input
+         * @throws IOException
+         *             if reading fails
+         */
+        String readLine() throws IOException {
+            int length = 0;
+            boolean skipWhitespace = true;
+            boolean appendedLineBegin = false;
+            boolean precedingBackslash = false;
+            boolean commentLine = false;
+            while (true) {
+                if (offset >= limit && !fill()) {
+                    return length == 0 ? null : new String(line, 0, precedingBackslash ? length - 1 : length);
+                }
+                char c = buffer[offset++];
+                if (commentLine) {
+                    if (c == '\r' || c == '\n') {
+                        commentLine = false;
+                        skipWhitespace = true;
+                    }
+                    continue;
+                }
+                if (skipWhitespace) {
+                    if (isWhitespace(c) || (!appendedLineBegin && (c == '\r' || c == '\n'))) {
+                        continue;
+                    }
+                    skipWhitespace = false;
+                    appendedLineBegin = false;
+                }
+                if (length == 0 && (c == '#' || c == '!')) {
+                    // a comment, also when a continued line is still empty
+                    commentLine = true;
+                    continue;
+                }
+                if (c != '\n' && c != '\r') {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = c;
+                    precedingBackslash = c == '\\' && !precedingBackslash;
+                    continue;
+                }
+                if (length == 0) {
+                    skipWhitespace = true;
+                    continue;
+                }
+                if (offset >= limit && !fill()) {
+                    return new String(line, 0, precedingBackslash ? length - 1 : length);
+                }
+                if (!precedingBackslash) {
+                    return new String(line, 0, length);
+                }
+                length--;
+                skipWhitespace = true;
+                appendedLineBegin = true;
+                precedingBackslash = false;
+                if (c == '\r' && buffer[offset] == '\n') {
+                    offset++;
+                }
+            }
+        }
+
+        private boolean fill() throws IOException {
+            limit = in.read(buffer);
+            offset = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return false;
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,78 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.file;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Credential store backed by an immutable on-heap map, built from a properties
+ * file.
+ */
+public class MapCredentialStore implements CredentialStore {
+
+    public static final MapCredentialStore EMPTY = new MapCredentialStore(Collections.emptyMap());
+
+    private final Map<String, String> credentials;
+
+    private MapCredentialStore(Map<String, String> credentials) {
+        this.credentials = credentials;
+    }
+
+    /**
+     * Creates a store holding a copy of the given properties.
+     *
+     * @param properties
+     *            username to password properties
+     * @return MapCredentialStore
+     */
+    public static MapCredentialStore of(Properties properties) {
+        Map<String, String> map = new HashMap<>(properties.size() * 4 / 3 + 1);
+        for (String key : properties.stringPropertyNames()) {
+            map.put(key, properties.getProperty(key));
+        }
+        return new MapCredentialStore(Collections.unmodifiableMap(map));
+    }
+
+    @Override
+    public String getPassword(String username) {
+        return credentials.get(username);
+    }
+
+    @Override
+    public int size() {
+        return credentials.size();
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> consumer) {
+        credentials.keySet().forEach(consumer);
+    }
+
+}
@@ -0,0 +1,199 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Credential store backed by a memory-mapped file in the compiled binary
+ * format, see {@link CredentialFileCompiler}. Lookups read directly from the
+ * mapping, so the credentials occupy no heap and opening the file does not
+ * depend on the number of entries.
+ *
+ * <pre>
+ * header  int magic, int version, int slot count (power of two), int entry count
+ * table   slot count x (int username hash, int record offset), offset 0 marks an empty slot
+ * records unsigned short username length, username, unsigned short password length, password (UTF-8)
+ * </pre>
+ *
+ * The table is an open addressing hash table with linear probing. All values
+ * are big-endian.
+ */
+public class MappedCredentialStore implements CredentialStore {
+
+    static final int MAGIC = 0x52354352;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+
+    static final int SLOT_SIZE = 8;
+
+    private final MappedByteBuffer buffer;
+
+    private final int mask;
+
+    private final int entries;
+
+    private MappedCredentialStore(MappedByteBuffer buffer, int slots, int entries) {
+        this.buffer = buffer;
+        this.mask = slots - 1;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns whether the given file is in the compiled binary format.
+     *
+     * @param file
+     *            the file to check
+     * @return true if the file starts with the binary format marker
+     */
+    public static boolean isCompiled(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = new byte[4];
+            return in.read(head) == 4 && ByteBuffer.wrap(head).getInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Maps a compiled credentials file.
+     *
+     * @param file
+     *            the compiled file
+     * @return MappedCredentialStore
+     * @throws IOException
+     *             if the file cannot be mapped or is not a valid compiled file
+     */
+    public static MappedCredentialStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid compiled credentials file size " + size);
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a compiled credentials file or unsupported version: " + file);
+            }
+            int slots = buffer.getInt(8);
+            int entries = buffer.getInt(12);
+            if (Integer.bitCount(slots) != 1 || HEADER_SIZE + (long) slots * SLOT_SIZE > size) {
+                throw new IOException("Corrupt compiled credentials file: " + file);
+            }
+            return new MappedCredentialStore(buffer, slots, entries);
+        }
+    }
+
+    @Override
+    public String getPassword(String username) {
+        if (username == null) {
+            return null;
+        }
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(user);
+        int index = hash & mask;
+        // a valid table always has an empty slot, the bound only guards against a corrupt file
+        for (int probes = 0; probes <= mask; probes++) {
+            int slot = HEADER_SIZE + index * SLOT_SIZE;
+            int offset = buffer.getInt(slot + 4);
+            if (offset == 0) {
+                return null;
+            }
+            if (buffer.getInt(slot) == hash && usernameEquals(offset, user)) {
+                int passwordOffset = offset + 2 + user.length;
+                byte[] password = new byte[buffer.getShort(passwordOffset) & 0xffff];
+                for (int i = 0; i < password.length; i++) {
+                    password[i] = buffer.get(passwordOffset + 2 + i);
+                }
+                return new String(password, StandardCharsets.UTF_8);
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private boolean usernameEquals(int offset, byte[] user) {
+        if ((buffer.getShort(offset) & 0xffff) != user.length) {
+            return false;
+        }
+        for (int i = 0; i < user.length; i++) {
+            if (buffer.get(offset + 2 + i) != user[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return entries;
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> consumer) {
+        for (int index = 0; index <= mask; index++) {
+            int offset = buffer.getInt(HEADER_SIZE + index * SLOT_SIZE + 4);
+            if (offset != 0) {
+                byte[] user = new byte[buffer.getShort(offset) & 0xffff];
+                for (int i = 0; i < user.length; i++) {
+                    user[i] = buffer.get(offset + 2 + i);
+                }
+                consumer.accept(new String(user, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Hashes a UTF-8 encoded username (FNV-1a followed by a final avalanche).
+     *
+     * @param bytes
+     *            the encoded username
+     * @return hash
+     */
+    static int hash(byte[] bytes) {
+        int h = 0x811c9dc5;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+}
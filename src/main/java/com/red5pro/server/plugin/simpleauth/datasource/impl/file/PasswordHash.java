@@ -0,0 +1,141 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.file;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password hashes for the credentials file. A hashed entry has
+ * the form
+ *
+ * <pre>
+ * pbkdf2-sha256$&lt;iterations&gt;$&lt;base64 salt&gt;$&lt;base64 hash&gt;
+ * </pre>
+ *
+ * Hashes are generated with the main method:
+ *
+ * <pre>
+ * java -cp red5pro-simple-auth-plugin.jar \
+ *     com.red5pro.server.plugin.simpleauth.datasource.impl.file.PasswordHash &lt;password&gt; [iterations]
+ * </pre>
+ */
+public final class PasswordHash {
+
+    public static final String PREFIX = "pbkdf2-sha256$";
+
+    public static final int DEFAULT_ITERATIONS = 310000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+    private static final int SALT_LENGTH = 16;
+
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordHash() {
+    }
+
+    public static void main(String[] args) throws GeneralSecurityException {
+        if (args.length < 1) {
+            System.err.println("Usage: PasswordHash <password> [iterations]");
+            System.exit(1);
+        }
+        int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        System.out.println(hash(args[0], iterations));
+    }
+
+    /**
+     * Returns whether a stored password is a hash in the supported format.
+     *
+     * @param stored
+     *            the stored password
+     * @return true if hashed
+     */
+    public static boolean isHash(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Hashes a password with a random salt.
+     *
+     * @param password
+     *            the password
+     * @param iterations
+     *            PBKDF2 iteration count
+     * @return encoded hash
+     * @throws GeneralSecurityException
+     *             if PBKDF2 is not available
+     */
+    public static String hash(String password, int iterations) throws GeneralSecurityException {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        byte[] hash = derive(password, salt, iterations, HASH_BITS);
+        return PREFIX + iterations + '$' + encoder.encodeToString(salt) + '$' + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Verifies a password against an encoded hash, comparing in constant time.
+     *
+     * @param password
+     *            the password to verify
+     * @param encoded
+     *            the encoded hash
+     * @return true if the password matches, false if not or if the hash is
+     *         malformed
+     */
+    public static boolean verify(String password, String encoded) {
+        try {
+            String[] parts = encoded.substring(PREFIX.length()).split("\\$");
+            if (parts.length != 3) {
+                return false;
+            }
+            int iterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(expected, derive(password, salt, iterations, expected.length * 8));
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations, int bits) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+}
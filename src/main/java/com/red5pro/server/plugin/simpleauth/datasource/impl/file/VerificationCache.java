@@ -0,0 +1,173 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.file;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of password hash verification results, so that repeated
+ * verifications of the same credentials skip the key derivation. Entries are
+ * keyed on a SHA-256 digest of the username, the password and the stored hash;
+ * the password itself is not kept, and changing the stored hash makes earlier
+ * entries unreachable.
+ */
+public class VerificationCache {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    private final long ttl;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a verification cache.
+     *
+     * @param maxSize
+     *            maximum number of results held
+     * @param ttl
+     *            time in milliseconds a result is kept
+     */
+    public VerificationCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the cache key for the given credentials.
+     *
+     * @param username
+     *            the username
+     * @param password
+     *            the provided password
+     * @param stored
+     *            the stored hash
+     * @return key
+     */
+    public String key(String username, String password, String stored) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        digest.update(username.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(password.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(stored.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Returns the cached result for the given key.
+     *
+     * @param key
+     *            the key
+     * @return the verification result or null if not cached
+     */
+    public Boolean get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expires > System.currentTimeMillis()) {
+                hits.increment();
+                return entry.verified;
+            }
+            entries.remove(key, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches a verification result.
+     *
+     * @param key
+     *            the key
+     * @param verified
+     *            the verification result
+     */
+    public void put(String key, boolean verified) {
+        if (entries.size() >= maxSize) {
+            trim();
+        }
+        entries.put(key, new Entry(verified, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Removes expired results and, if the cache is still full, a tenth of the
+     * remaining ones.
+     */
+    private void trim() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expires <= now);
+        int excess = entries.size() - (maxSize - maxSize / 10) + 1;
+        Iterator<String> it = entries.keySet().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static final class Entry {
+
+        final boolean verified;
+
+        final long expires;
+
+        Entry(boolean verified, long expires) {
+            this.verified = verified;
+            this.expires = expires;
+        }
+
+    }
+
+}
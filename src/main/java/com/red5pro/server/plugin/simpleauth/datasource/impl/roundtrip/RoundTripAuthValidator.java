@@ -25,22 +25,37 @@
 //
 package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip;
 
-import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.util.EntityUtils;
 import org.red5.server.adapter.IApplication;
 import org.red5.server.adapter.MultiThreadedApplicationAdapter;
@@ -51,17 +66,19 @@ import org.red5.server.api.Red5;
 import org.red5.server.api.scope.IScope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.NodeList;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonPrimitive;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.batch.AuthBatcher;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.batch.InvalidationQueue;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.breaker.CircuitBreaker;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.breaker.DegradedPolicy;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.cache.AuthDecisionCache;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.cache.SingleFlight;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.cluster.ClusterPassword;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.codec.AuthCodec;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.executor.LazyAuthExecutor;
 import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthData;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
 import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.stream.security.PlaybackSecurity;
 import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.stream.security.PublishSecurity;
 import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.stream.security.SharedObjectSecurity;
@@ -89,7 +106,7 @@ import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
  * @author Rajdeep Rath
  *
  */
-public class RoundTripAuthValidator implements IAuthenticationValidator, IApplication {
+public class RoundTripAuthValidator implements IAuthenticationValidator, IApplication, RoundTripAuthValidatorMXBean {
 
     private static Logger logger = LoggerFactory.getLogger(RoundTripAuthValidator.class);
 
@@ -103,6 +120,59 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
      */
     private String invalidateEndPoint;
 
+    /**
+     * Property to store the optional batch validation endpoint path (relative to
+     * root). When set, validation requests are sent in batches
+     */
+    private String validateBatchEndPoint;
+
+    /**
+     * Time in milliseconds to collect validation requests into a batch
+     */
+    private long batchWindow = 5L;
+
+    /**
+     * Maximum number of validation requests per batch
+     */
+    private int batchMaxSize = 100;
+
+    /**
+     * Aggregates validation requests into batches, null when batching is disabled
+     */
+    private AuthBatcher batcher;
+
+    /**
+     * Property to store the optional batch invalidation endpoint path (relative
+     * to root). When set, queued invalidations are sent in batches
+     */
+    private String invalidateBatchEndPoint;
+
+    /**
+     * Sends invalidations in the background
+     */
+    private InvalidationQueue invalidationQueue;
+
+    /**
+     * Maximum number of pending invalidations
+     */
+    private int invalidationQueueSize = 10000;
+
+    /**
+     * Maximum number of invalidations sent at a time
+     */
+    private int invalidationBatchSize = 100;
+
+    /**
+     * Number of times a failed invalidation is retried
+     */
+    private int invalidationMaxRetries = 3;
+
+    /**
+     * Time in milliseconds before a failed invalidation is first retried, doubled
+     * on each further retry
+     */
+    private long invalidationRetryBackoff = 1000L;
+
     /**
      * Optional authentication mode. If set to true, clients are allowed access
      * initially and validated in a parallel thread instead of blocking access for
@@ -127,16 +197,172 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
     private MultiThreadedApplicationAdapter adapter;
 
     /**
-     * Gson object for serializing/deserializing JSON
+     * Defines the HTTP client timeout
      */
-    private final Gson gson = new Gson();
+    private static final int TIMEOUT = 9000;
 
     /**
-     * Defines the HTTP client timeout
+     * Runs the completion tasks of `lazy` validations
      */
-    private static final int TIMEOUT = 9000;
+    private LazyAuthExecutor threadPoolExecutor;
+
+    /**
+     * Executor used for `lazy` validations - `bounded` or `virtual` (JDK 21+)
+     */
+    private String lazyAuthExecutor = "bounded";
+
+    /**
+     * Number of threads of the bounded `lazy` validation pool
+     */
+    private int lazyAuthPoolSize = 8;
+
+    /**
+     * Maximum number of `lazy` validation tasks waiting for a thread
+     */
+    private int lazyAuthQueueSize = 1000;
+
+    /**
+     * What to do with a `lazy` validation task when the queue is full -
+     * `caller-runs` or `abort`
+     */
+    private String lazyAuthRejectionPolicy = "caller-runs";
+
+    /**
+     * Shared, pooled non-blocking HTTP client used for all requests to the remote
+     * server
+     */
+    private volatile CloseableHttpAsyncClient httpClient;
+
+    /**
+     * Connection pool of the HTTP client
+     */
+    private PoolingNHttpClientConnectionManager connectionManager;
+
+    /**
+     * Evicts expired and idle connections from the pool
+     */
+    private ScheduledExecutorService connectionEvictor;
+
+    /**
+     * Maximum number of pooled connections per route (remote host)
+     */
+    private int maxConnectionsPerRoute = 50;
+
+    /**
+     * Maximum number of pooled connections in total
+     */
+    private int maxConnectionsTotal = 200;
 
-    private ExecutorService threadPoolExecutor;
+    /**
+     * Time in milliseconds after which an idle pooled connection is evicted
+     */
+    private long idleConnectionTimeout = 30000L;
+
+    /**
+     * Time in milliseconds a pooled connection is kept alive when the remote
+     * server does not specify a keep-alive timeout
+     */
+    private long keepAliveDuration = 60000L;
+
+    /**
+     * Cache of remote server decisions, null when caching is disabled
+     */
+    private AuthDecisionCache decisionCache;
+
+    /**
+     * Maximum number of cached decisions. Zero disables the cache
+     */
+    private int decisionCacheMaxSize;
+
+    /**
+     * Time in milliseconds an allowed decision is cached, unless the remote server
+     * specifies a `ttl`
+     */
+    private long decisionCacheAllowTtl = 30000L;
+
+    /**
+     * Time in milliseconds a denied decision is cached, unless the remote server
+     * specifies a `ttl`
+     */
+    private long decisionCacheDenyTtl = 5000L;
+
+    /**
+     * Time in milliseconds an expired decision is retained, to be served by the
+     * `stale-cache` degraded policy; when that policy is in use and no retention
+     * is set, {@link #DEFAULT_STALE_RETENTION} applies
+     */
+    private long decisionCacheStaleRetention;
+
+    /**
+     * Stale retention used by the `stale-cache` degraded policy when none is
+     * configured; without retention it would only find unexpired decisions,
+     * which are cache hits anyway
+     */
+    private static final long DEFAULT_STALE_RETENTION = 300000L;
+
+    /**
+     * Circuit breaker guarding the remote server, null when disabled
+     */
+    private CircuitBreaker circuitBreaker;
+
+    /**
+     * Whether calls to the remote server are guarded by a circuit breaker
+     */
+    private boolean circuitBreakerEnabled;
+
+    /**
+     * Number of most recent calls the circuit breaker considers
+     */
+    private int circuitBreakerWindowSize = 20;
+
+    /**
+     * Percentage of failed calls at which the circuit breaker opens
+     */
+    private int circuitBreakerFailureRateThreshold = 50;
+
+    /**
+     * Time in milliseconds after which a call is considered slow
+     */
+    private long circuitBreakerSlowCallThreshold = 3000L;
+
+    /**
+     * Percentage of slow calls at which the circuit breaker opens
+     */
+    private int circuitBreakerSlowCallRateThreshold = 80;
+
+    /**
+     * Time in milliseconds the circuit breaker stays open before a probe call is
+     * let through
+     */
+    private long circuitBreakerOpenDuration = 30000L;
+
+    /**
+     * How validations are answered while the circuit breaker is open -
+     * `fail-closed`, `fail-open` or `stale-cache`
+     */
+    private String degradedPolicy = "fail-closed";
+
+    private DegradedPolicy policy = DegradedPolicy.FAIL_CLOSED;
+
+    /**
+     * Number of validations answered by the degraded policy
+     */
+    private final LongAdder degradedDecisions = new LongAdder();
+
+    /**
+     * Coalesces identical validation requests while they are in flight
+     */
+    private final SingleFlight<String, AuthResult> inFlight = new SingleFlight<>();
+
+    /**
+     * Cluster password used to validate cluster restreamers, loaded on first use
+     */
+    private volatile ClusterPassword clusterPassword;
+
+    /**
+     * Name under which this validator is registered with JMX
+     */
+    private ObjectName objectName;
 
     /**
      * Stores the remote server access protocol (HTTP/HTTPS)
@@ -177,11 +403,394 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
         return port;
     }
 
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public long getKeepAliveDuration() {
+        return keepAliveDuration;
+    }
+
+    public void setKeepAliveDuration(long keepAliveDuration) {
+        this.keepAliveDuration = keepAliveDuration;
+    }
+
+    public int getDecisionCacheMaxSize() {
+        return decisionCacheMaxSize;
+    }
+
+    public void setDecisionCacheMaxSize(int decisionCacheMaxSize) {
+        this.decisionCacheMaxSize = decisionCacheMaxSize;
+    }
+
+    public long getDecisionCacheAllowTtl() {
+        return decisionCacheAllowTtl;
+    }
+
+    public void setDecisionCacheAllowTtl(long decisionCacheAllowTtl) {
+        this.decisionCacheAllowTtl = decisionCacheAllowTtl;
+    }
+
+    public long getDecisionCacheDenyTtl() {
+        return decisionCacheDenyTtl;
+    }
+
+    public void setDecisionCacheDenyTtl(long decisionCacheDenyTtl) {
+        this.decisionCacheDenyTtl = decisionCacheDenyTtl;
+    }
+
+    public String getLazyAuthExecutor() {
+        return lazyAuthExecutor;
+    }
+
+    public void setLazyAuthExecutor(String lazyAuthExecutor) {
+        this.lazyAuthExecutor = lazyAuthExecutor;
+    }
+
+    public int getLazyAuthPoolSize() {
+        return lazyAuthPoolSize;
+    }
+
+    public void setLazyAuthPoolSize(int lazyAuthPoolSize) {
+        this.lazyAuthPoolSize = lazyAuthPoolSize;
+    }
+
+    public int getLazyAuthQueueSize() {
+        return lazyAuthQueueSize;
+    }
+
+    public void setLazyAuthQueueSize(int lazyAuthQueueSize) {
+        this.lazyAuthQueueSize = lazyAuthQueueSize;
+    }
+
+    public String getLazyAuthRejectionPolicy() {
+        return lazyAuthRejectionPolicy;
+    }
+
+    public void setLazyAuthRejectionPolicy(String lazyAuthRejectionPolicy) {
+        this.lazyAuthRejectionPolicy = lazyAuthRejectionPolicy;
+    }
+
+    public long getDecisionCacheStaleRetention() {
+        return decisionCacheStaleRetention;
+    }
+
+    public void setDecisionCacheStaleRetention(long decisionCacheStaleRetention) {
+        this.decisionCacheStaleRetention = decisionCacheStaleRetention;
+    }
+
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+    }
+
+    public int getCircuitBreakerWindowSize() {
+        return circuitBreakerWindowSize;
+    }
+
+    public void setCircuitBreakerWindowSize(int circuitBreakerWindowSize) {
+        this.circuitBreakerWindowSize = circuitBreakerWindowSize;
+    }
+
+    public int getCircuitBreakerFailureRateThreshold() {
+        return circuitBreakerFailureRateThreshold;
+    }
+
+    public void setCircuitBreakerFailureRateThreshold(int circuitBreakerFailureRateThreshold) {
+        this.circuitBreakerFailureRateThreshold = circuitBreakerFailureRateThreshold;
+    }
+
+    public long getCircuitBreakerSlowCallThreshold() {
+        return circuitBreakerSlowCallThreshold;
+    }
+
+    public void setCircuitBreakerSlowCallThreshold(long circuitBreakerSlowCallThreshold) {
+        this.circuitBreakerSlowCallThreshold = circuitBreakerSlowCallThreshold;
+    }
+
+    public int getCircuitBreakerSlowCallRateThreshold() {
+        return circuitBreakerSlowCallRateThreshold;
+    }
+
+    public void setCircuitBreakerSlowCallRateThreshold(int circuitBreakerSlowCallRateThreshold) {
+        this.circuitBreakerSlowCallRateThreshold = circuitBreakerSlowCallRateThreshold;
+    }
+
+    public long getCircuitBreakerOpenDuration() {
+        return circuitBreakerOpenDuration;
+    }
+
+    public void setCircuitBreakerOpenDuration(long circuitBreakerOpenDuration) {
+        this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+    }
+
+    public String getDegradedPolicy() {
+        return degradedPolicy;
+    }
+
+    public void setDegradedPolicy(String degradedPolicy) {
+        this.degradedPolicy = degradedPolicy;
+    }
+
+    public String getValidateCredentialsBatchEndPoint() {
+        return validateBatchEndPoint;
+    }
+
+    public void setValidateCredentialsBatchEndPoint(String validateBatchEndPoint) {
+        this.validateBatchEndPoint = validateBatchEndPoint;
+    }
+
+    public String getInvalidateCredentialsBatchEndPoint() {
+        return invalidateBatchEndPoint;
+    }
+
+    public void setInvalidateCredentialsBatchEndPoint(String invalidateBatchEndPoint) {
+        this.invalidateBatchEndPoint = invalidateBatchEndPoint;
+    }
+
+    public int getInvalidationQueueSize() {
+        return invalidationQueueSize;
+    }
+
+    public void setInvalidationQueueSize(int invalidationQueueSize) {
+        this.invalidationQueueSize = invalidationQueueSize;
+    }
+
+    public int getInvalidationBatchSize() {
+        return invalidationBatchSize;
+    }
+
+    public void setInvalidationBatchSize(int invalidationBatchSize) {
+        this.invalidationBatchSize = invalidationBatchSize;
+    }
+
+    public int getInvalidationMaxRetries() {
+        return invalidationMaxRetries;
+    }
+
+    public void setInvalidationMaxRetries(int invalidationMaxRetries) {
+        this.invalidationMaxRetries = invalidationMaxRetries;
+    }
+
+    public long getInvalidationRetryBackoff() {
+        return invalidationRetryBackoff;
+    }
+
+    public void setInvalidationRetryBackoff(long invalidationRetryBackoff) {
+        this.invalidationRetryBackoff = invalidationRetryBackoff;
+    }
+
+    public long getBatchWindow() {
+        return batchWindow;
+    }
+
+    public void setBatchWindow(long batchWindow) {
+        this.batchWindow = batchWindow;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    @Override
+    public int getDecisionCacheSize() {
+        return (decisionCache != null) ? decisionCache.size() : 0;
+    }
+
+    @Override
+    public long getDecisionCacheHits() {
+        return (decisionCache != null) ? decisionCache.getHits() : 0L;
+    }
+
+    @Override
+    public long getDecisionCacheMisses() {
+        return (decisionCache != null) ? decisionCache.getMisses() : 0L;
+    }
+
+    @Override
+    public long getDecisionCacheEvictions() {
+        return (decisionCache != null) ? decisionCache.getEvictions() : 0L;
+    }
+
+    @Override
+    public long getDecisionCacheExpirations() {
+        return (decisionCache != null) ? decisionCache.getExpirations() : 0L;
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        return inFlight.getInFlight();
+    }
+
+    @Override
+    public long getBackendRequests() {
+        return inFlight.getExecuted();
+    }
+
+    @Override
+    public long getCoalescedRequests() {
+        return inFlight.getCoalesced();
+    }
+
+    @Override
+    public double getCoalescingRatio() {
+        return inFlight.getCoalescingRatio();
+    }
+
+    @Override
+    public long getBatchesSent() {
+        return (batcher != null) ? batcher.getBatches() : 0L;
+    }
+
+    @Override
+    public long getBatchedRequests() {
+        return (batcher != null) ? batcher.getItems() : 0L;
+    }
+
+    @Override
+    public String getCircuitBreakerState() {
+        return (circuitBreaker != null) ? circuitBreaker.getState().name() : "DISABLED";
+    }
+
+    @Override
+    public float getCircuitBreakerFailureRate() {
+        return (circuitBreaker != null) ? circuitBreaker.getFailureRate() : 0f;
+    }
+
+    @Override
+    public float getCircuitBreakerSlowCallRate() {
+        return (circuitBreaker != null) ? circuitBreaker.getSlowCallRate() : 0f;
+    }
+
+    @Override
+    public long getDegradedDecisions() {
+        return degradedDecisions.sum();
+    }
+
+    @Override
+    public int getLazyAuthQueueDepth() {
+        return (threadPoolExecutor != null) ? threadPoolExecutor.getQueueDepth() : 0;
+    }
+
+    @Override
+    public int getLazyAuthActiveTasks() {
+        return (threadPoolExecutor != null) ? threadPoolExecutor.getActiveTasks() : 0;
+    }
+
+    @Override
+    public long getLazyAuthCompletedTasks() {
+        return (threadPoolExecutor != null) ? threadPoolExecutor.getCompletedTasks() : 0L;
+    }
+
+    @Override
+    public long getLazyAuthRejectedTasks() {
+        return (threadPoolExecutor != null) ? threadPoolExecutor.getRejectedTasks() : 0L;
+    }
+
+    @Override
+    public double getLazyAuthAverageTaskLatency() {
+        return (threadPoolExecutor != null) ? threadPoolExecutor.getAverageTaskLatency() : 0d;
+    }
+
+    @Override
+    public double getLazyAuthMaxTaskLatency() {
+        return (threadPoolExecutor != null) ? threadPoolExecutor.getMaxTaskLatency() : 0d;
+    }
+
+    @Override
+    public int getInvalidationQueueDepth() {
+        return (invalidationQueue != null) ? invalidationQueue.size() : 0;
+    }
+
+    @Override
+    public long getInvalidationsSent() {
+        return (invalidationQueue != null) ? invalidationQueue.getSent() : 0L;
+    }
+
+    @Override
+    public long getInvalidationsMerged() {
+        return (invalidationQueue != null) ? invalidationQueue.getMerged() : 0L;
+    }
+
+    @Override
+    public long getInvalidationRetries() {
+        return (invalidationQueue != null) ? invalidationQueue.getRetries() : 0L;
+    }
+
+    @Override
+    public long getInvalidationsDropped() {
+        return (invalidationQueue != null) ? invalidationQueue.getDropped() : 0L;
+    }
+
     @Override
     public void initialize() {
         logger.info("initialization part");
         if (lazyAuth) {
-            threadPoolExecutor = Executors.newCachedThreadPool();
+            threadPoolExecutor = new LazyAuthExecutor(lazyAuthExecutor, lazyAuthPoolSize, lazyAuthQueueSize, lazyAuthRejectionPolicy);
+            logger.debug("lazyAuth executor = {}\nlazyAuthPoolSize = {}\nlazyAuthQueueSize = {}\nlazyAuthRejectionPolicy = {}",
+                    threadPoolExecutor.isVirtual() ? "virtual" : "bounded", lazyAuthPoolSize, lazyAuthQueueSize, lazyAuthRejectionPolicy);
+        }
+        if (circuitBreakerEnabled) {
+            circuitBreaker = new CircuitBreaker(protocol + host + ":" + port, circuitBreakerWindowSize, circuitBreakerFailureRateThreshold,
+                    circuitBreakerSlowCallThreshold, circuitBreakerSlowCallRateThreshold, circuitBreakerOpenDuration);
+            policy = DegradedPolicy.fromString(degradedPolicy);
+            if (policy == DegradedPolicy.STALE_CACHE) {
+                if (decisionCacheMaxSize <= 0) {
+                    logger.warn(
+                            "Degraded policy 'stale-cache' requires the decision cache, validations are denied while the circuit is open");
+                } else if (decisionCacheStaleRetention <= 0) {
+                    logger.info("Degraded policy 'stale-cache' without decisionCacheStaleRetention, retaining expired decisions for {} ms",
+                            DEFAULT_STALE_RETENTION);
+                    decisionCacheStaleRetention = DEFAULT_STALE_RETENTION;
+                }
+            }
+        }
+        if (decisionCacheMaxSize > 0) {
+            decisionCache = new AuthDecisionCache(decisionCacheMaxSize, decisionCacheAllowTtl, decisionCacheDenyTtl,
+                    decisionCacheStaleRetention);
+        }
+        if (StringUtils.isNotBlank(validateBatchEndPoint)) {
+            batcher = new AuthBatcher(batchMaxSize, batchWindow,
+                    items -> post(validateBatchEndPoint, AuthCodec.encode(items), AuthCodec::decodeResults));
+        }
+        if (invalidateEndPoint != null && invalidateEndPoint.length() > 3) {
+            invalidationQueue = new InvalidationQueue(invalidationQueueSize, invalidationBatchSize, invalidationMaxRetries,
+                    invalidationRetryBackoff, data -> post(invalidateEndPoint, AuthCodec.encode(data), AuthCodec::decodeResult),
+                    StringUtils.isNotBlank(invalidateBatchEndPoint)
+                            ? items -> post(invalidateBatchEndPoint, AuthCodec.encode(items), AuthCodec::decodeResult)
+                            : null);
+        }
+        try {
+            getHttpClient();
+        } catch (IOReactorException e) {
+            logger.error("Could not create the HTTP client", e);
         }
         if (adapter != null) {
             adapter.registerStreamPublishSecurity(new PublishSecurity(this));
@@ -194,6 +803,119 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
         logger.debug("adapter = {}\ncontext = {}", adapter, context);
         logger.debug("auth host = {}\nauth port = {}\nauth protocol = {}", host, port, protocol);
         logger.debug("authEndPoint = {}\ninvalidateEndPoint = {}\nlazyAuth = {}", validateEndPoint, invalidateEndPoint, lazyAuth);
+        logger.debug("maxConnectionsPerRoute = {}\nmaxConnectionsTotal = {}\nidleConnectionTimeout = {}\nkeepAliveDuration = {}",
+                maxConnectionsPerRoute, maxConnectionsTotal, idleConnectionTimeout, keepAliveDuration);
+        logger.debug("decisionCacheMaxSize = {}\ndecisionCacheAllowTtl = {}\ndecisionCacheDenyTtl = {}", decisionCacheMaxSize,
+                decisionCacheAllowTtl, decisionCacheDenyTtl);
+        logger.debug("circuitBreakerEnabled = {}\ndegradedPolicy = {}", circuitBreakerEnabled, policy);
+        logger.debug("validateBatchEndPoint = {}\nbatchWindow = {}\nbatchMaxSize = {}", validateBatchEndPoint, batchWindow, batchMaxSize);
+    }
+
+    /**
+     * Registers this validator with the platform MBean server, so its statistics
+     * can be monitored.
+     *
+     * @param app
+     *            The application scope
+     */
+    private void registerJMX(IScope app) {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName(
+                    String.format("com.red5pro.server.plugin.simpleauth:type=RoundTripAuthValidator,name=%s", app.getName()));
+            if (!mbs.isRegistered(objectName)) {
+                mbs.registerMBean(this, objectName);
+            }
+        } catch (Exception e) {
+            logger.warn("Error registering RoundTripAuthValidator with JMX", e);
+        }
+    }
+
+    /**
+     * Removes this validator from the platform MBean server.
+     */
+    private void unregisterJMX() {
+        if (objectName != null) {
+            try {
+                MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                if (mbs.isRegistered(objectName)) {
+                    mbs.unregisterMBean(objectName);
+                }
+            } catch (Exception e) {
+                logger.warn("Error unregistering RoundTripAuthValidator from JMX", e);
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Returns the shared HTTP client, creating and starting it on first use.
+     * Connections to the remote server are pooled and kept alive between requests,
+     * idle connections are evicted in the background.
+     *
+     * @return CloseableHttpAsyncClient
+     * @throws IOReactorException
+     *             if the I/O reactor could not be created
+     */
+    private CloseableHttpAsyncClient getHttpClient() throws IOReactorException {
+        CloseableHttpAsyncClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+                    connectionManager.setMaxTotal(maxConnectionsTotal);
+                    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+                    // honor the servers keep-alive header if it has one, but never beyond our own limit
+                    ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+                        long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                        return (duration > 0) ? Math.min(duration, keepAliveDuration) : keepAliveDuration;
+                    };
+                    RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(TIMEOUT).setConnectionRequestTimeout(TIMEOUT)
+                            .setSocketTimeout(TIMEOUT).build();
+                    client = HttpAsyncClients.custom().setConnectionManager(connectionManager).setKeepAliveStrategy(keepAliveStrategy)
+                            .setDefaultRequestConfig(requestConfig).build();
+                    client.start();
+                    // the async client has no built-in evictor, so run our own
+                    final PoolingNHttpClientConnectionManager pool = connectionManager;
+                    long interval = Math.max(1000L, idleConnectionTimeout / 2);
+                    connectionEvictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread t = new Thread(r, "RoundTripAuthConnectionEvictor");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    connectionEvictor.scheduleWithFixedDelay(() -> {
+                        pool.closeExpiredConnections();
+                        pool.closeIdleConnections(idleConnectionTimeout, TimeUnit.MILLISECONDS);
+                    }, interval, interval, TimeUnit.MILLISECONDS);
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Closes the shared HTTP client and its pooled connections.
+     */
+    private void closeHttpClient() {
+        CloseableHttpAsyncClient client;
+        synchronized (this) {
+            client = httpClient;
+            httpClient = null;
+            connectionManager = null;
+            if (connectionEvictor != null) {
+                connectionEvictor.shutdownNow();
+                connectionEvictor = null;
+            }
+        }
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                logger.warn("Exception in client close", e);
+            }
+        }
     }
 
     @Override
@@ -254,26 +976,32 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
      */
     private boolean validateClusterReStreamer(String password) {
         // check that password match with cluster password
-        File file = new File(System.getProperty("red5.config_root") + "/cluster.xml");
-        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        try {
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.parse(file);
-
-            Element pageElement = (Element) document.getElementsByTagName("beans").item(0);
-            NodeList result = pageElement.getElementsByTagName("property");
-            logger.info("length: " + result.getLength());
+        if (getClusterPassword().matches(password)) {
+            return true;
+        }
+        logger.error("wrong password supplied for cluster");
+        return false;
+    }
 
-            NamedNodeMap s = result.item(1).getAttributes();
-            if (s.item(1).getNodeValue().equals(password)) {
-                return true;
-            } else {
-                logger.error("wrong password supplied for cluster");
+    /**
+     * Returns the cluster password, reading `cluster.xml` and watching it for
+     * changes on first use.
+     *
+     * @return ClusterPassword
+     */
+    private ClusterPassword getClusterPassword() {
+        ClusterPassword cp = clusterPassword;
+        if (cp == null) {
+            synchronized (this) {
+                cp = clusterPassword;
+                if (cp == null) {
+                    cp = new ClusterPassword(Paths.get(System.getProperty("red5.config_root", "."), "cluster.xml"));
+                    cp.start();
+                    clusterPassword = cp;
+                }
             }
-        } catch (Exception e) {
-            logger.error("It was not possible to validate the cluster password", e);
         }
-        return false;
+        return cp;
     }
 
     /**
@@ -289,36 +1017,7 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
      * @return Boolean true if validation is successful, otherwise false
      */
     public boolean onPublishAuthenticate(IConnection conn, IScope scope, String stream) {
-        String username = conn.getStringAttribute("username");
-        String password = conn.getStringAttribute("password");
-        String token = (conn.hasAttribute("token")) ? conn.getStringAttribute("token") : "";
-        String type = "publisher";
-        if (password != null && username != null) {
-            if (!this.lazyAuth) {
-                try {
-                    JsonObject result = authenticateOverHttp(type, username, password, token, stream);
-                    boolean canStream = result.get("result").getAsBoolean();
-                    if (canStream) {
-                        conn.setAttribute("roletype", type);
-                        conn.setAttribute("streamID", stream);
-                        if (result.has("url")) {
-                            String url = result.get("url").getAsString();
-                            conn.setAttribute("signedURL", url);
-                        } else {
-                            logger.debug("No Signed URL supplied");
-                        }
-                    }
-                    return canStream;
-                } catch (Exception e) {
-                    logger.warn("Exception onPublish check", e);
-                    return false;
-                }
-            } else {
-                threadPoolExecutor.submit(new LazyAuthentication(conn, type, username, password, token, stream));
-                return true;
-            }
-        }
-        return true;
+        return authenticateConnection(conn, "publisher", stream, "onPublish");
     }
 
     /**
@@ -336,34 +1035,10 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
     public boolean onPlaybackAuthenticate(IConnection conn, IScope scope, String stream) {
         String username = conn.getStringAttribute("username");
         String password = conn.getStringAttribute("password");
-        String token = (conn.hasAttribute("token")) ? conn.getStringAttribute("token") : "";
-        String type = "subscriber";
-        if (password != null && username != null) {
-            if (username.equals("cluster-restreamer")) {
-                return validateClusterReStreamer(password);
-            } else if (!this.lazyAuth) {
-                try {
-                    JsonObject result = authenticateOverHttp(type, username, password, token, stream);
-                    boolean canStream = result.get("result").getAsBoolean();
-                    if (canStream) {
-                        conn.setAttribute("roletype", type);
-                        conn.setAttribute("streamID", stream);
-                        if (result.has("url")) {
-                            String url = result.get("url").getAsString();
-                            conn.setAttribute("signedURL", url);
-                        }
-                    }
-                    return canStream;
-                } catch (Exception e) {
-                    logger.warn("Exception onPlayback check", e);
-                    return false;
-                }
-            } else {
-                threadPoolExecutor.submit(new LazyAuthentication(conn, type, username, password, token, stream));
-                return true;
-            }
+        if (password != null && "cluster-restreamer".equals(username)) {
+            return validateClusterReStreamer(password);
         }
-        return true;
+        return authenticateConnection(conn, "subscriber", stream, "onPlayback");
     }
 
     /**
@@ -379,33 +1054,65 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
      * @return Boolean true if validation is successful, otherwise false
      */
     public boolean onSharedObjectAuthenticate(IConnection conn, IScope scope, String name) {
+        // XXX may want to add SO name or use stream name and so name?
+        return authenticateConnection(conn, "publisher", name, "onSharedObject");
+    }
+
+    /**
+     * Authenticates a connection for the given action via remote server, using the
+     * credentials stored on the connection at connect time. In lazy mode the
+     * connection is allowed immediately and closed later if the remote server
+     * denies it; no thread is held while the request is in flight.
+     *
+     * @param conn
+     *            The IConnection object representing the connection
+     * @param type
+     *            The client type to validate - `publisher or subscriber`
+     * @param name
+     *            The `stream name` or `object name` for which validation is
+     *            required
+     * @param action
+     *            Name of the action for logging
+     * @return Boolean true if validation is successful, otherwise false
+     */
+    private boolean authenticateConnection(IConnection conn, String type, String name, String action) {
         String username = conn.getStringAttribute("username");
         String password = conn.getStringAttribute("password");
         String token = (conn.hasAttribute("token")) ? conn.getStringAttribute("token") : "";
-        String type = "publisher";
         if (password != null && username != null) {
             if (!this.lazyAuth) {
                 try {
-                    JsonObject result = authenticateOverHttp(type, username, password, token, name);
-                    boolean canStream = result.get("result").getAsBoolean();
+                    // the red5 security hooks are synchronous, so we have to wait for the answer here
+                    AuthResult result = authenticateAsync(type, username, password, token, name).join();
+                    boolean canStream = result.isResult();
                     if (canStream) {
                         conn.setAttribute("roletype", type);
-                        // XXX may want to add SO name or use stream name and so name?
                         conn.setAttribute("streamID", name);
-                        if (result.has("url")) {
-                            String url = result.get("url").getAsString();
-                            conn.setAttribute("signedURL", url);
+                        if (result.hasUrl()) {
+                            conn.setAttribute("signedURL", result.getUrl());
                         } else {
                             logger.debug("No Signed URL supplied");
                         }
                     }
                     return canStream;
                 } catch (Exception e) {
-                    logger.warn("Exception onSharedObject check", e);
+                    logger.warn("Exception {} check", action, e);
                     return false;
                 }
             } else {
-                threadPoolExecutor.submit(new LazyAuthentication(conn, type, username, password, token, name));
+                final long submitted = System.nanoTime();
+                final LazyAuthentication lazyAuthentication = new LazyAuthentication(conn);
+                // completes on the http client's I/O thread, which also runs the task when the
+                // caller-runs policy applies
+                authenticateAsync(type, username, password, token, name).thenAccept(result -> {
+                    try {
+                        threadPoolExecutor.execute(() -> lazyAuthentication.accept(result), submitted);
+                    } catch (RejectedExecutionException e) {
+                        // the check cannot be completed, so fail closed
+                        logger.warn("Lazy {} check for {} rejected, closing connection: {}", action, name, e.getMessage());
+                        lazyAuthentication.close();
+                    }
+                });
                 return true;
             }
         }
@@ -430,58 +1137,110 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
      * @return JsonObject JSON payload response from the remote server
      */
     public JsonObject authenticateOverHttp(String type, String username, String password, String token, String name) {
-        JsonObject result = new JsonObject();
-        // default to failed
-        result.add("result", new JsonPrimitive(false));
-        CloseableHttpClient client = null;
-        try {
+        // copy, as the response may be shared through the decision cache
+        return authenticateAsync(type, username, password, token, name).join().getResponse().deepCopy();
+    }
+
+    /**
+     * Asynchronously authenticates/validates a client via remote server over
+     * http/https. The returned future never completes exceptionally; failures to
+     * reach the remote server result in access being denied. When the decision
+     * cache is enabled, recent decisions for the same parameters are returned
+     * without contacting the remote server; failures are never cached. Identical
+     * requests made while one is in flight share its response. If a batch endpoint
+     * is configured, the request is sent as part of a batch. While the circuit
+     * breaker is open, the degraded policy answers instead of the remote server.
+     *
+     * @param type
+     *            The client type to validate - `publisher or subscriber`
+     * @param username
+     *            The `username` parameter provided by the client
+     * @param password
+     *            The `password` parameter provided by the client
+     * @param token
+     *            The `token` parameter provided by the client
+     * @param name
+     *            The `stream name` or `object name` for which validation is
+     *            required
+     *
+     * @return CompletableFuture completed with the remote server response
+     */
+    public CompletableFuture<AuthResult> authenticateAsync(String type, String username, String password, String token, String name) {
+        final String key = cacheKey(type, username, password, token, name);
+        final AuthDecisionCache cache = decisionCache;
+        if (cache != null) {
+            AuthResult cached = cache.get(key);
+            if (cached != null) {
+                logger.debug("Cached decision for {} {}: {}", type, name, cached);
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        return inFlight.execute(key, () -> {
+            final CircuitBreaker breaker = circuitBreaker;
+            if (breaker != null && !breaker.tryAcquire()) {
+                return CompletableFuture.completedFuture(degradedResult(key, type, name));
+            }
             AuthData data = new AuthData();
             data.setType(type);
             data.setUsername(username);
             data.setPassword(password);
             data.setToken(token);
             data.setStreamID(name);
-
-            String json = gson.toJson(data);
-
-            client = HttpClients.createDefault();
-
-            HttpPost httpPost = new HttpPost(protocol + host + ":" + port + validateEndPoint);
-
-            StringEntity entity = new StringEntity(json);
-            httpPost.setEntity(entity);
-            httpPost.setHeader("Accept", "application/json");
-            httpPost.setHeader("Content-type", "application/json");
-
-            RequestConfig.Builder requestConfig = RequestConfig.custom();
-            requestConfig.setConnectTimeout(TIMEOUT);
-            requestConfig.setConnectionRequestTimeout(TIMEOUT);
-            requestConfig.setSocketTimeout(TIMEOUT);
-
-            httpPost.setConfig(requestConfig.build());
-
-            CloseableHttpResponse response = client.execute(httpPost);
-            int code = response.getStatusLine().getStatusCode();
-            logger.info("response code: {}", code);
-            if (code == 200) {
-                String responseBody = EntityUtils.toString(response.getEntity());
-                logger.info("responseBody = {}", responseBody);
-                JsonParser parser = new JsonParser();
-                JsonElement obj = parser.parse(responseBody);
-                result = obj.getAsJsonObject();
+            final long start = System.currentTimeMillis();
+            CompletableFuture<AuthResult> response = (batcher != null) ? batcher.submit(data)
+                    : post(validateEndPoint, AuthCodec.encode(data), AuthCodec::decodeResult);
+            if (breaker != null) {
+                response = response.whenComplete((result, t) -> {
+                    long duration = System.currentTimeMillis() - start;
+                    if (t == null) {
+                        breaker.onSuccess(duration);
+                    } else {
+                        breaker.onFailure(duration);
+                    }
+                });
             }
-        } catch (Exception e) {
-            logger.warn("Exception attempting authentication", e);
-        } finally {
-            if (client != null) {
-                try {
-                    client.close();
-                } catch (IOException e) {
-                    logger.warn("Exception in client close", e);
+            return response.thenApply(result -> {
+                if (cache != null) {
+                    cache.put(key, result);
                 }
-            }
+                return result;
+            }).exceptionally(t -> {
+                logger.warn("Exception attempting authentication", t);
+                return AuthResult.denied();
+            });
+        });
+    }
+
+    /**
+     * Answers a validation according to the degraded policy, used while the
+     * circuit breaker refuses calls to the remote server.
+     */
+    private AuthResult degradedResult(String key, String type, String name) {
+        degradedDecisions.increment();
+        switch (policy) {
+            case FAIL_OPEN:
+                logger.warn("Remote server unavailable, allowing {} {}", type, name);
+                return AuthResult.allowed();
+            case STALE_CACHE:
+                AuthResult stale = (decisionCache != null) ? decisionCache.getStale(key) : null;
+                if (stale != null) {
+                    logger.warn("Remote server unavailable, using cached decision for {} {}", type, name);
+                    return stale;
+                }
+                logger.warn("Remote server unavailable and no cached decision, denying {} {}", type, name);
+                return AuthResult.denied();
+            default:
+                logger.warn("Remote server unavailable, denying {} {}", type, name);
+                return AuthResult.denied();
         }
-        return result;
+    }
+
+    /**
+     * Builds the decision cache key for the given validation parameters.
+     */
+    private static String cacheKey(String type, String username, String password, String token, String name) {
+        return new StringBuilder().append(type).append('\u0000').append(username).append('\u0000').append(password).append('\u0000')
+                .append(token).append('\u0000').append(name).toString();
     }
 
     /**
@@ -500,79 +1259,111 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
      */
     public JsonObject invalidateCredentialsOverHttp(String username, String password, String token, String stream) {
         JsonObject result = null;
-        CloseableHttpClient client = null;
         try {
             AuthData data = new AuthData();
             data.setUsername(username);
             data.setPassword(password);
             data.setToken(token);
             data.setStreamID(stream);
+            result = post(invalidateEndPoint, AuthCodec.encode(data), AuthCodec::decodeResult).join().getResponse();
+        } catch (Exception e) {
+            logger.warn("Exception invalidating credentials", e);
+        }
+        return result;
+    }
 
-            String json = gson.toJson(data);
+    /**
+     * Posts the given JSON body to an endpoint on the remote server without
+     * blocking. The future completes exceptionally if the request fails, the
+     * server replies with anything other than 200 or the response cannot be
+     * decoded.
+     *
+     * @param endPoint
+     *            The endpoint path relative to the server root
+     * @param body
+     *            The UTF-8 encoded JSON to post
+     * @param decoder
+     *            Decodes the response body
+     * @return CompletableFuture completed with the decoded response
+     */
+    private <T> CompletableFuture<T> post(String endPoint, byte[] body, AuthCodec.Decoder<T> decoder) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            HttpPost httpPost = new HttpPost(protocol + host + ":" + port + endPoint);
+            httpPost.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+            httpPost.setHeader("Accept", "application/json");
+            getHttpClient().execute(httpPost, new FutureCallback<HttpResponse>() {
+
+                @Override
+                public void completed(HttpResponse response) {
+                    try {
+                        int code = response.getStatusLine().getStatusCode();
+                        logger.info("response code: {}", code);
+                        if (code == 200) {
+                            // the async client buffers the content, so this does not block
+                            byte[] responseBody = EntityUtils.toByteArray(response.getEntity());
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("responseBody = {}", new String(responseBody, StandardCharsets.UTF_8));
+                            }
+                            future.complete(decoder.decode(responseBody));
+                        } else {
+                            future.completeExceptionally(new IOException("Unexpected response code " + code + " from " + endPoint));
+                        }
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
 
-            client = HttpClients.createDefault();
+                @Override
+                public void failed(Exception ex) {
+                    future.completeExceptionally(ex);
+                }
 
-            HttpPost httpPost = new HttpPost(protocol + host + ":" + port + invalidateEndPoint);
-            StringEntity entity = new StringEntity(json);
-            httpPost.setEntity(entity);
-            httpPost.setHeader("Accept", "application/json");
-            httpPost.setHeader("Content-type", "application/json");
-            CloseableHttpResponse response = client.execute(httpPost);
-            if (response.getStatusLine().getStatusCode() == 200) {
-                String responseBody = EntityUtils.toString(response.getEntity());
-                logger.info("responseBody = {}", responseBody);
-                JsonParser parser = new JsonParser();
-                JsonElement obj = parser.parse(responseBody);
-                result = obj.getAsJsonObject();
-            }
-        } catch (Exception e) {
-            logger.warn("Exception invalidating credentials", e);
-        } finally {
-            if (client != null) {
-                try {
-                    client.close();
-                } catch (IOException e) {
-                    logger.warn("Exception in client close", e);
+                @Override
+                public void cancelled() {
+                    future.cancel(false);
                 }
-            }
+
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
         }
-        return result;
+        return future;
     }
 
     /**
-     * Async task class, used for `lazy` validation/invalidation
+     * Completion task, used for `lazy` validation. Closes the connection if the
+     * remote server denies access.
      *
      * @author Rajdeep Rath
      *
      */
-    class LazyAuthentication implements Runnable {
-
-        String type, username, password, token, stream;
+    class LazyAuthentication implements Consumer<AuthResult> {
 
         IConnection conn;
 
-        public LazyAuthentication(IConnection conn, String type, String username, String password, String token, String name) {
+        public LazyAuthentication(IConnection conn) {
             this.conn = conn;
-            this.type = type;
-            this.username = username;
-            this.password = password;
-            this.token = token;
-            this.stream = name;
         }
 
         @Override
-        public void run() {
-            boolean canStream = false;
+        public void accept(AuthResult result) {
+            if (!result.isResult()) {
+                logger.warn("Closing connected client due to authentication failure");
+                close();
+            }
+        }
+
+        /**
+         * Closes the connection if it is still connected.
+         */
+        void close() {
             try {
-                JsonObject result = authenticateOverHttp(type, username, password, token, stream);
-                canStream = result.get("result").getAsBoolean();
-                if (!canStream && conn.isConnected()) {
-                    logger.warn("Closing connected client due to authentication failure");
+                if (conn.isConnected()) {
                     conn.close();
                 }
             } catch (Exception e) {
-                canStream = false;
-                logger.warn("Exception attempting authentication", e);
+                logger.warn("Exception closing connection", e);
             }
         }
     }
@@ -609,14 +1400,25 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
             String password = conn.getStringAttribute("password");
             String streamID = conn.getStringAttribute("streamID");
             String token = conn.getStringAttribute("token");
-            if (invalidateEndPoint != null && invalidateEndPoint.length() > 3) {
-                invalidateCredentialsOverHttp(username, password, token, streamID);
+            if (decisionCache != null) {
+                // the publishing session is over, so its cached decision should not be reused
+                decisionCache.remove(cacheKey("publisher", username, password, (token != null) ? token : "", streamID));
+            }
+            if (invalidationQueue != null) {
+                // sent in the background, so the disconnect is not held up by the remote server
+                AuthData data = new AuthData();
+                data.setUsername(username);
+                data.setPassword(password);
+                data.setToken(token);
+                data.setStreamID(streamID);
+                invalidationQueue.offer(data);
             }
         }
     }
 
     @Override
     public boolean appStart(IScope app) {
+        registerJMX(app);
         return true;
     }
 
@@ -636,6 +1438,29 @@ public class RoundTripAuthValidator implements IAuthenticationValidator, IApplic
 
     @Override
     public void appStop(IScope app) {
+        unregisterJMX();
+        if (batcher != null) {
+            batcher.close();
+        }
+        if (invalidationQueue != null) {
+            invalidationQueue.close(TIMEOUT);
+        }
+        ClusterPassword cp;
+        synchronized (this) {
+            cp = clusterPassword;
+            // read and watched again on next use, should the application restart
+            clusterPassword = null;
+        }
+        if (cp != null) {
+            cp.stop();
+        }
+        if (threadPoolExecutor != null) {
+            threadPoolExecutor.shutdown();
+        }
+        if (decisionCache != null) {
+            decisionCache.clear();
+        }
+        closeHttpClient();
     }
 
     @Override
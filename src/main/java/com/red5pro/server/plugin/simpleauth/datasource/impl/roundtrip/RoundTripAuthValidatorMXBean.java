@@ -0,0 +1,226 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip;
+
+/**
+ * JMX management interface exposing the runtime statistics of a
+ * RoundTripAuthValidator.
+ */
+public interface RoundTripAuthValidatorMXBean {
+
+    /**
+     * Returns the number of decisions currently cached.
+     *
+     * @return cache size
+     */
+    int getDecisionCacheSize();
+
+    /**
+     * Returns the number of validations answered from the decision cache.
+     *
+     * @return cache hits
+     */
+    long getDecisionCacheHits();
+
+    /**
+     * Returns the number of validations not found in the decision cache.
+     *
+     * @return cache misses
+     */
+    long getDecisionCacheMisses();
+
+    /**
+     * Returns the number of decisions evicted from the cache due to its size.
+     *
+     * @return cache evictions
+     */
+    long getDecisionCacheEvictions();
+
+    /**
+     * Returns the number of decisions removed from the cache after expiring.
+     *
+     * @return cache expirations
+     */
+    long getDecisionCacheExpirations();
+
+    /**
+     * Returns the number of validation requests currently in flight to the remote
+     * server.
+     *
+     * @return in-flight requests
+     */
+    int getInFlightRequests();
+
+    /**
+     * Returns the number of validation requests sent to the remote server.
+     *
+     * @return backend requests
+     */
+    long getBackendRequests();
+
+    /**
+     * Returns the number of validations that shared an identical in-flight request
+     * instead of sending their own.
+     *
+     * @return coalesced requests
+     */
+    long getCoalescedRequests();
+
+    /**
+     * Returns the fraction of validations that shared an in-flight request.
+     *
+     * @return ratio between 0 and 1
+     */
+    double getCoalescingRatio();
+
+    /**
+     * Returns the number of batches sent to the batch validation endpoint.
+     *
+     * @return batches sent
+     */
+    long getBatchesSent();
+
+    /**
+     * Returns the number of validation requests sent as part of a batch.
+     *
+     * @return batched requests
+     */
+    long getBatchedRequests();
+
+    /**
+     * Returns the circuit breaker state - CLOSED, OPEN, HALF_OPEN or DISABLED.
+     *
+     * @return circuit breaker state
+     */
+    String getCircuitBreakerState();
+
+    /**
+     * Returns the failure percentage of recent calls to the remote server.
+     *
+     * @return failure rate between 0 and 100
+     */
+    float getCircuitBreakerFailureRate();
+
+    /**
+     * Returns the slow call percentage of recent calls to the remote server.
+     *
+     * @return slow call rate between 0 and 100
+     */
+    float getCircuitBreakerSlowCallRate();
+
+    /**
+     * Returns the number of validations answered by the degraded policy while the
+     * circuit breaker was open.
+     *
+     * @return degraded decisions
+     */
+    long getDegradedDecisions();
+
+    /**
+     * Returns the number of `lazy` validation tasks waiting to run.
+     *
+     * @return queue depth
+     */
+    int getLazyAuthQueueDepth();
+
+    /**
+     * Returns the number of `lazy` validation tasks currently running.
+     *
+     * @return active tasks
+     */
+    int getLazyAuthActiveTasks();
+
+    /**
+     * Returns the number of `lazy` validation tasks completed.
+     *
+     * @return completed tasks
+     */
+    long getLazyAuthCompletedTasks();
+
+    /**
+     * Returns the number of `lazy` validation tasks rejected because the queue was
+     * full.
+     *
+     * @return rejected tasks
+     */
+    long getLazyAuthRejectedTasks();
+
+    /**
+     * Returns the average time in milliseconds from starting a `lazy` validation,
+     * including the round trip to the remote server, until its completion task
+     * finished.
+     *
+     * @return average latency
+     */
+    double getLazyAuthAverageTaskLatency();
+
+    /**
+     * Returns the longest time in milliseconds from starting a `lazy` validation,
+     * including the round trip to the remote server, until its completion task
+     * finished.
+     *
+     * @return maximum latency
+     */
+    double getLazyAuthMaxTaskLatency();
+
+    /**
+     * Returns the number of invalidations waiting to be sent, including those
+     * waiting for a retry.
+     *
+     * @return pending invalidations
+     */
+    int getInvalidationQueueDepth();
+
+    /**
+     * Returns the number of invalidations sent successfully.
+     *
+     * @return sent invalidations
+     */
+    long getInvalidationsSent();
+
+    /**
+     * Returns the number of invalidations merged with an identical pending one.
+     *
+     * @return merged invalidations
+     */
+    long getInvalidationsMerged();
+
+    /**
+     * Returns the number of times a failed invalidation was scheduled for retry.
+     *
+     * @return retries
+     */
+    long getInvalidationRetries();
+
+    /**
+     * Returns the number of invalidations dropped, because the queue was full or
+     * they failed after all retries.
+     *
+     * @return dropped invalidations
+     */
+    long getInvalidationsDropped();
+
+}
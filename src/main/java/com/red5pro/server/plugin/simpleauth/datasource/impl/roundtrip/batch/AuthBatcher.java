@@ -0,0 +1,231 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.batch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthData;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
+
+/**
+ * Aggregates validation requests arriving within a short window into a single
+ * batch request. A batch is sent once it holds the maximum number of items or
+ * when the window, started by its first item, elapses. The remote server
+ * replies with a JSON array holding one result per item, in the same order,
+ * and each result is handed back to the caller that submitted the item.
+ */
+public class AuthBatcher {
+
+    private static Logger logger = LoggerFactory.getLogger(AuthBatcher.class);
+
+    private final int maxSize;
+
+    private final long window;
+
+    private final Function<List<AuthData>, CompletableFuture<List<AuthResult>>> sender;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+
+    private List<PendingItem> pending;
+
+    /**
+     * Incremented each time a batch is taken, so a window timer only flushes the
+     * batch it was started for
+     */
+    private long generation;
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder items = new LongAdder();
+
+    /**
+     * Creates a batcher.
+     *
+     * @param maxSize
+     *            maximum number of items per batch
+     * @param window
+     *            time in milliseconds to wait for more items after the first one
+     * @param sender
+     *            sends a batch to the remote server, completing with the array of
+     *            results
+     */
+    public AuthBatcher(int maxSize, long window, Function<List<AuthData>, CompletableFuture<List<AuthResult>>> sender) {
+        this.maxSize = Math.max(1, maxSize);
+        this.window = Math.max(0L, window);
+        this.sender = sender;
+        this.pending = new ArrayList<>(this.maxSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "RoundTripAuthBatcher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Adds a validation request to the current batch.
+     *
+     * @param data
+     *            the request to validate
+     * @return CompletableFuture completed with the result for this request
+     */
+    public CompletableFuture<AuthResult> submit(AuthData data) {
+        PendingItem item = new PendingItem(data);
+        List<PendingItem> full = null;
+        synchronized (lock) {
+            pending.add(item);
+            if (pending.size() >= maxSize) {
+                full = take();
+            } else if (pending.size() == 1) {
+                final long batch = generation;
+                try {
+                    scheduler.schedule(() -> flush(batch), window, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    // scheduler is shut down, send right away
+                    full = take();
+                }
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return item.future;
+    }
+
+    /**
+     * Sends the batch started for the given generation, if it has not been sent
+     * already.
+     */
+    private void flush(long batch) {
+        List<PendingItem> items = null;
+        synchronized (lock) {
+            if (batch == generation && !pending.isEmpty()) {
+                items = take();
+            }
+        }
+        if (items != null) {
+            send(items);
+        }
+    }
+
+    /**
+     * Takes the pending items as a batch, must be called holding the lock.
+     */
+    private List<PendingItem> take() {
+        List<PendingItem> items = pending;
+        pending = new ArrayList<>(maxSize);
+        generation++;
+        return items;
+    }
+
+    private void send(List<PendingItem> batch) {
+        batches.increment();
+        items.add(batch.size());
+        List<AuthData> data = new ArrayList<>(batch.size());
+        for (PendingItem item : batch) {
+            data.add(item.data);
+        }
+        try {
+            sender.apply(data).whenComplete((results, t) -> {
+                if (t != null) {
+                    batch.forEach(item -> item.future.completeExceptionally(t));
+                } else if (results.size() != batch.size()) {
+                    IOException e = new IOException("Batch response has " + results.size() + " results for " + batch.size() + " requests");
+                    batch.forEach(item -> item.future.completeExceptionally(e));
+                } else {
+                    for (int i = 0; i < batch.size(); i++) {
+                        AuthResult result = results.get(i);
+                        if (result != null) {
+                            batch.get(i).future.complete(result);
+                        } else {
+                            batch.get(i).future.completeExceptionally(new IOException("Invalid batch result at index " + i));
+                        }
+                    }
+                }
+            });
+        } catch (Exception e) {
+            batch.forEach(item -> item.future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Sends any pending items and stops the window timer.
+     */
+    public void close() {
+        List<PendingItem> items;
+        synchronized (lock) {
+            items = take();
+        }
+        if (!items.isEmpty()) {
+            logger.debug("Sending {} pending items on close", items.size());
+            send(items);
+        }
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Returns the number of batches sent.
+     *
+     * @return batches
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of items sent in batches.
+     *
+     * @return items
+     */
+    public long getItems() {
+        return items.sum();
+    }
+
+    private static final class PendingItem {
+
+        final AuthData data;
+
+        final CompletableFuture<AuthResult> future = new CompletableFuture<>();
+
+        PendingItem(AuthData data) {
+            this.data = data;
+        }
+
+    }
+
+}
@@ -0,0 +1,353 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.batch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthData;
+
+/**
+ * Background queue for credential invalidations, so they are not sent on the
+ * disconnect path. Identical pending invalidations are merged, the queue is
+ * drained periodically in batches and failed invalidations are retried with
+ * exponential backoff until the retry limit is reached. When the queue is
+ * full, new invalidations and retries are dropped. At most a few sends are in
+ * flight at a time, so a slow remote server makes the queue fill up rather than
+ * the number of outstanding requests grow.
+ */
+public class InvalidationQueue {
+
+    private static Logger logger = LoggerFactory.getLogger(InvalidationQueue.class);
+
+    /**
+     * Time in milliseconds between queue drains
+     */
+    private static final long DRAIN_INTERVAL = 200L;
+
+    /**
+     * Upper limit for the retry backoff, in milliseconds
+     */
+    private static final long MAX_BACKOFF = 60000L;
+
+    /**
+     * Maximum number of drained batches in flight; further drains are skipped
+     * until one completes
+     */
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private final LinkedHashMap<String, Item> pending = new LinkedHashMap<>();
+
+    private final int maxSize;
+
+    private final int batchSize;
+
+    private final int maxRetries;
+
+    private final long retryBackoff;
+
+    private final Function<AuthData, CompletableFuture<?>> sender;
+
+    private final Function<List<AuthData>, CompletableFuture<?>> batchSender;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Sends which have not completed yet
+     */
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder merged = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates an invalidation queue.
+     *
+     * @param maxSize
+     *            maximum number of pending invalidations
+     * @param batchSize
+     *            maximum number of invalidations sent per drain
+     * @param maxRetries
+     *            number of times a failed invalidation is retried
+     * @param retryBackoff
+     *            time in milliseconds before the first retry, doubled on each
+     *            further retry
+     * @param sender
+     *            sends a single invalidation
+     * @param batchSender
+     *            sends a batch of invalidations in one request, or null to send
+     *            them individually
+     */
+    public InvalidationQueue(int maxSize, int batchSize, int maxRetries, long retryBackoff, Function<AuthData, CompletableFuture<?>> sender,
+            Function<List<AuthData>, CompletableFuture<?>> batchSender) {
+        this.maxSize = Math.max(1, maxSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoff = Math.max(0L, retryBackoff);
+        this.sender = sender;
+        this.batchSender = batchSender;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "RoundTripAuthInvalidation");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an invalidation.
+     *
+     * @param data
+     *            the credentials to invalidate
+     * @return true if queued or merged with a pending one, false if dropped
+     *         because the queue is full or closed
+     */
+    public boolean offer(AuthData data) {
+        String key = key(data);
+        synchronized (pending) {
+            // checked under the lock, so an invalidation is either refused or flushed by close
+            if (closed) {
+                dropped.increment();
+                logger.warn("Invalidation queue is closed, dropping invalidation for {}", data.getStreamID());
+                return false;
+            }
+            if (pending.containsKey(key)) {
+                merged.increment();
+                return true;
+            }
+            if (pending.size() >= maxSize) {
+                dropped.increment();
+                logger.warn("Invalidation queue is full, dropping invalidation for {}", data.getStreamID());
+                return false;
+            }
+            pending.put(key, new Item(key, data));
+        }
+        return true;
+    }
+
+    /**
+     * Sends the invalidations which are due, up to the batch size.
+     */
+    private void drain() {
+        try {
+            if (inFlight.size() >= MAX_IN_FLIGHT) {
+                logger.debug("Invalidations in flight limit reached, skipping drain");
+                return;
+            }
+            List<Item> items = take(batchSize, System.currentTimeMillis());
+            if (!items.isEmpty()) {
+                track(send(items, true));
+            }
+        } catch (Exception e) {
+            logger.warn("Exception draining invalidation queue", e);
+        }
+    }
+
+    /**
+     * Removes up to max items due at the given time from the queue.
+     */
+    private List<Item> take(int max, long now) {
+        List<Item> items = new ArrayList<>();
+        synchronized (pending) {
+            Iterator<Map.Entry<String, Item>> it = pending.entrySet().iterator();
+            while (it.hasNext() && items.size() < max) {
+                Item item = it.next().getValue();
+                if (item.due <= now) {
+                    items.add(item);
+                    it.remove();
+                }
+            }
+        }
+        return items;
+    }
+
+    private CompletableFuture<Void> send(List<Item> items, boolean retry) {
+        if (batchSender != null) {
+            List<AuthData> data = new ArrayList<>(items.size());
+            for (Item item : items) {
+                data.add(item.data);
+            }
+            return call(() -> batchSender.apply(data)).handle((r, t) -> {
+                items.forEach(item -> completed(item, t, retry));
+                return null;
+            });
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[items.size()];
+        for (int i = 0; i < futures.length; i++) {
+            Item item = items.get(i);
+            futures[i] = call(() -> sender.apply(item.data)).handle((r, t) -> {
+                completed(item, t, retry);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Keeps track of a send until it completes.
+     */
+    private void track(CompletableFuture<Void> future) {
+        inFlight.add(future);
+        future.whenComplete((r, t) -> inFlight.remove(future));
+    }
+
+    /**
+     * Invokes a sender, turning an exception thrown by it into a failed future.
+     */
+    private static CompletableFuture<?> call(Supplier<CompletableFuture<?>> call) {
+        try {
+            return call.get();
+        } catch (Exception e) {
+            CompletableFuture<?> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private void completed(Item item, Throwable t, boolean retry) {
+        if (t == null) {
+            sent.increment();
+            return;
+        }
+        // once closed nothing drains the queue anymore
+        if (retry && !closed && item.attempts < maxRetries) {
+            item.attempts++;
+            item.due = System.currentTimeMillis() + Math.min(MAX_BACKOFF, retryBackoff << Math.min(item.attempts - 1, 16));
+            synchronized (pending) {
+                if (pending.containsKey(item.key)) {
+                    // a newer invalidation for the same credentials supersedes this one
+                    return;
+                }
+                if (pending.size() < maxSize) {
+                    pending.put(item.key, item);
+                    retries.increment();
+                    return;
+                }
+            }
+        }
+        dropped.increment();
+        logger.warn("Dropping invalidation for {} after {} attempt(s): {}", item.data.getStreamID(), item.attempts + 1, t.getMessage());
+    }
+
+    /**
+     * Stops the queue and sends all pending invalidations, including those
+     * waiting for a retry, waiting up to the given time for them and the sends
+     * already in flight to complete. Invalidations failing from now on are not
+     * retried but dropped.
+     *
+     * @param timeout
+     *            time in milliseconds to wait
+     */
+    public void close(long timeout) {
+        closed = true;
+        scheduler.shutdown();
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            // let a drain which is running register its send
+            scheduler.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Item> items = take(Integer.MAX_VALUE, Long.MAX_VALUE);
+        if (!items.isEmpty()) {
+            logger.debug("Flushing {} pending invalidation(s)", items.size());
+            track(send(items, false));
+        }
+        try {
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.warn("Pending invalidations could not be flushed: {}", e.toString());
+        }
+    }
+
+    private static String key(AuthData data) {
+        return new StringBuilder().append(data.getUsername()).append('\u0000').append(data.getPassword()).append('\u0000')
+                .append(data.getToken()).append('\u0000').append(data.getStreamID()).toString();
+    }
+
+    public int size() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getMerged() {
+        return merged.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private static final class Item {
+
+        final String key;
+
+        final AuthData data;
+
+        int attempts;
+
+        long due;
+
+        Item(String key, AuthData data) {
+            this.key = key;
+            this.data = data;
+        }
+
+    }
+
+}
@@ -0,0 +1,236 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.breaker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker guarding calls to the remote server. Outcomes of the most
+ * recent calls are kept in a sliding window; once the window is at least half
+ * full and either the failure rate or the slow call rate reaches its threshold,
+ * the breaker opens and calls are refused. After the open duration a single
+ * probe call is let through (half-open); its success closes the breaker, its
+ * failure opens it again.
+ */
+public class CircuitBreaker {
+
+    private static Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+
+    private final int failureRateThreshold;
+
+    private final long slowCallThreshold;
+
+    private final int slowCallRateThreshold;
+
+    private final long openDuration;
+
+    /**
+     * Ring buffers of call outcomes, true where the call failed or was slow
+     */
+    private final boolean[] failures;
+
+    private final boolean[] slowCalls;
+
+    private int position;
+
+    private int recorded;
+
+    private int failureCount;
+
+    private int slowCallCount;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private boolean probeInFlight;
+
+    /**
+     * Creates a circuit breaker.
+     *
+     * @param name
+     *            name used in log messages
+     * @param windowSize
+     *            number of most recent calls considered
+     * @param failureRateThreshold
+     *            failure percentage at which the breaker opens
+     * @param slowCallThreshold
+     *            time in milliseconds after which a call is considered slow
+     * @param slowCallRateThreshold
+     *            slow call percentage at which the breaker opens
+     * @param openDuration
+     *            time in milliseconds the breaker stays open before probing
+     */
+    public CircuitBreaker(String name, int windowSize, int failureRateThreshold, long slowCallThreshold, int slowCallRateThreshold,
+            long openDuration) {
+        this.name = name;
+        this.failures = new boolean[Math.max(1, windowSize)];
+        this.slowCalls = new boolean[failures.length];
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Returns whether a call may be made now. While half-open only one probe call
+     * is permitted at a time.
+     *
+     * @return true if the call is permitted
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDuration) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param duration
+     *            call duration in milliseconds
+     */
+    public synchronized void onSuccess(long duration) {
+        boolean slow = duration >= slowCallThreshold;
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            if (slow) {
+                open();
+            } else {
+                reset();
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false, slow);
+        }
+    }
+
+    /**
+     * Records a failed call.
+     *
+     * @param duration
+     *            call duration in milliseconds
+     */
+    public synchronized void onFailure(long duration) {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            open();
+        } else if (state == State.CLOSED) {
+            record(true, duration >= slowCallThreshold);
+        }
+    }
+
+    private void record(boolean failure, boolean slow) {
+        if (recorded == failures.length) {
+            // window is full, drop the oldest outcome
+            if (failures[position]) {
+                failureCount--;
+            }
+            if (slowCalls[position]) {
+                slowCallCount--;
+            }
+        } else {
+            recorded++;
+        }
+        failures[position] = failure;
+        slowCalls[position] = slow;
+        if (failure) {
+            failureCount++;
+        }
+        if (slow) {
+            slowCallCount++;
+        }
+        position = (position + 1) % failures.length;
+        if (recorded >= Math.max(1, failures.length / 2)
+                && (failureCount * 100 >= failureRateThreshold * recorded || slowCallCount * 100 >= slowCallRateThreshold * recorded)) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        reset();
+        transition(State.OPEN);
+    }
+
+    private void reset() {
+        position = 0;
+        recorded = 0;
+        failureCount = 0;
+        slowCallCount = 0;
+    }
+
+    private void transition(State newState) {
+        if (state != newState) {
+            logger.info("Circuit breaker {} changed from {} to {}", name, state, newState);
+            state = newState;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the failure percentage of the calls in the current window.
+     *
+     * @return failure rate between 0 and 100
+     */
+    public synchronized float getFailureRate() {
+        return (recorded > 0) ? failureCount * 100f / recorded : 0f;
+    }
+
+    /**
+     * Returns the slow call percentage of the calls in the current window.
+     *
+     * @return slow call rate between 0 and 100
+     */
+    public synchronized float getSlowCallRate() {
+        return (recorded > 0) ? slowCallCount * 100f / recorded : 0f;
+    }
+
+}
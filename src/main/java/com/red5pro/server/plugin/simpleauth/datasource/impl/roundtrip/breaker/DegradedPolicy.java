@@ -0,0 +1,78 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.breaker;
+
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * How validations are answered while the remote server is unavailable, i.e.
+ * when the circuit breaker refuses calls.
+ */
+public enum DegradedPolicy {
+
+    /**
+     * Deny access
+     */
+    FAIL_CLOSED,
+
+    /**
+     * Allow access
+     */
+    FAIL_OPEN,
+
+    /**
+     * Answer from the decision cache, including expired decisions still retained,
+     * and deny access if none is cached
+     */
+    STALE_CACHE;
+
+    private static Logger logger = LoggerFactory.getLogger(DegradedPolicy.class);
+
+    /**
+     * Returns the policy for a configuration value such as `fail-closed`,
+     * `fail-open` or `stale-cache`, case-insensitive.
+     *
+     * @param value
+     *            configuration value
+     * @return DegradedPolicy, FAIL_CLOSED if the value is empty or not recognized
+     */
+    public static DegradedPolicy fromString(String value) {
+        if (value != null && !value.trim().isEmpty()) {
+            String name = value.trim().replace('-', '_').toUpperCase(Locale.ROOT);
+            for (DegradedPolicy policy : values()) {
+                if (policy.name().equals(name)) {
+                    return policy;
+                }
+            }
+            logger.warn("Unrecognized degraded policy '{}', using fail-closed", value);
+        }
+        return FAIL_CLOSED;
+    }
+
+}
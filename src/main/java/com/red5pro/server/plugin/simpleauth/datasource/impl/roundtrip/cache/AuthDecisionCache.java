@@ -0,0 +1,239 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
+
+/**
+ * Bounded cache of remote server decisions. Allowed and denied results are kept
+ * for separate periods, unless the remote server specifies its own `ttl` for
+ * the result. Expired decisions may be retained for a while longer, so they can
+ * still be served when the remote server is unavailable. When the cache grows
+ * beyond its maximum size, entries past retention are purged first and then
+ * the entries closest to expiry are evicted.
+ */
+public class AuthDecisionCache {
+
+    /**
+     * Fraction of the maximum size to trim the cache down to once it overflows,
+     * so that eviction sweeps are not run on every insert
+     */
+    private static final double TRIM_RATIO = 0.9d;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final int maxSize;
+
+    private final long allowTtl;
+
+    private final long denyTtl;
+
+    private final long staleRetention;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Creates a decision cache.
+     *
+     * @param maxSize
+     *            maximum number of decisions held
+     * @param allowTtl
+     *            time in milliseconds to keep an allowed result
+     * @param denyTtl
+     *            time in milliseconds to keep a denied result
+     * @param staleRetention
+     *            time in milliseconds to retain a result after it expired
+     */
+    public AuthDecisionCache(int maxSize, long allowTtl, long denyTtl, long staleRetention) {
+        this.maxSize = maxSize;
+        this.allowTtl = allowTtl;
+        this.denyTtl = denyTtl;
+        this.staleRetention = Math.max(0L, staleRetention);
+    }
+
+    /**
+     * Returns the cached result for the given key, if present and not expired.
+     *
+     * @param key
+     *            request key
+     * @return AuthResult or null if not cached
+     */
+    public AuthResult get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            long now = System.currentTimeMillis();
+            if (entry.expires > now) {
+                hits.increment();
+                return entry.result;
+            }
+            if (entry.expires + staleRetention <= now && entries.remove(key, entry)) {
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the cached result for the given key even if it has expired, as long
+     * as it is still retained.
+     *
+     * @param key
+     *            request key
+     * @return AuthResult or null if not retained
+     */
+    public AuthResult getStale(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires + staleRetention > System.currentTimeMillis()) {
+            return entry.result;
+        }
+        return null;
+    }
+
+    /**
+     * Caches a result for the given key. Results with a time-to-live of zero or
+     * less are not cached.
+     *
+     * @param key
+     *            request key
+     * @param result
+     *            remote server result
+     */
+    public void put(String key, AuthResult result) {
+        long ttl = result.getTtl() >= 0 ? result.getTtl() * 1000L : (result.isResult() ? allowTtl : denyTtl);
+        if (ttl > 0) {
+            entries.put(key, new Entry(result, System.currentTimeMillis() + ttl));
+            if (entries.size() > maxSize) {
+                trim();
+            }
+        }
+    }
+
+    /**
+     * Removes the given key from the cache.
+     *
+     * @param key
+     *            request key
+     */
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Purges entries past retention and, if still needed, evicts the entries closest to
+     * expiry until the cache is back under its trim size. Only one thread trims
+     * at a time, others carry on.
+     */
+    private void trim() {
+        if (evictionLock.tryLock()) {
+            try {
+                long now = System.currentTimeMillis();
+                entries.entrySet().removeIf(e -> {
+                    if (e.getValue().expires + staleRetention <= now) {
+                        expirations.increment();
+                        return true;
+                    }
+                    return false;
+                });
+                int target = (int) (maxSize * TRIM_RATIO);
+                int excess = entries.size() - target;
+                if (excess > 0) {
+                    List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+                    candidates.sort(Comparator.comparingLong(e -> e.getValue().expires));
+                    for (int i = 0; i < excess && i < candidates.size(); i++) {
+                        Map.Entry<String, Entry> candidate = candidates.get(i);
+                        if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                            evictions.increment();
+                        }
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    private static final class Entry {
+
+        final AuthResult result;
+
+        final long expires;
+
+        Entry(AuthResult result, long expires) {
+            this.result = result;
+            this.expires = expires;
+        }
+
+    }
+
+}
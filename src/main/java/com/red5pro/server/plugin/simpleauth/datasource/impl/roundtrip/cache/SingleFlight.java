@@ -0,0 +1,125 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent requests. While a request for a key is in
+ * flight, further requests for the same key are handed the pending future
+ * instead of issuing a call of their own; all of them complete with the same
+ * result.
+ *
+ * @param <K>
+ *            request key type
+ * @param <V>
+ *            result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    private final LongAdder executed = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Returns the pending future for the given key if a call is in flight,
+     * otherwise invokes the call and shares its future until it completes.
+     *
+     * @param key
+     *            request key
+     * @param call
+     *            supplier issuing the actual request
+     * @return CompletableFuture completed with the shared result
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> pending = calls.putIfAbsent(key, future);
+        if (pending != null) {
+            coalesced.increment();
+            return pending;
+        }
+        executed.increment();
+        try {
+            call.get().whenComplete((result, t) -> {
+                // remove first, so late arrivals start a new call rather than get a completed one
+                calls.remove(key, future);
+                if (t != null) {
+                    future.completeExceptionally(t);
+                } else {
+                    future.complete(result);
+                }
+            });
+        } catch (Throwable t) {
+            calls.remove(key, future);
+            future.completeExceptionally(t);
+        }
+        return future;
+    }
+
+    /**
+     * Returns the number of calls currently in flight.
+     *
+     * @return in-flight calls
+     */
+    public int getInFlight() {
+        return calls.size();
+    }
+
+    /**
+     * Returns the number of calls actually issued.
+     *
+     * @return executed calls
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * Returns the number of requests that shared an in-flight call.
+     *
+     * @return coalesced requests
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the fraction of requests that were served by another request's call.
+     *
+     * @return ratio between 0 and 1
+     */
+    public double getCoalescingRatio() {
+        long shared = coalesced.sum();
+        long total = shared + executed.sum();
+        return (total > 0) ? (double) shared / total : 0d;
+    }
+
+}
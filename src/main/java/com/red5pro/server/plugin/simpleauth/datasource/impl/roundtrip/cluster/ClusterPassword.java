@@ -0,0 +1,128 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.cluster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.red5pro.server.plugin.simpleauth.utils.FileWatcher;
+
+/**
+ * Holds the cluster password read from `cluster.xml`. The file is parsed once
+ * and watched for changes, so the password can be checked without touching the
+ * disk. Passwords are compared in constant time.
+ */
+public class ClusterPassword {
+
+    private static Logger logger = LoggerFactory.getLogger(ClusterPassword.class);
+
+    private final Path file;
+
+    private volatile byte[] password;
+
+    private FileWatcher watcher;
+
+    public ClusterPassword(Path file) {
+        this.file = file.toAbsolutePath();
+    }
+
+    /**
+     * Loads the password and starts watching the file for changes.
+     */
+    public void start() {
+        load();
+        try {
+            watcher = new FileWatcher(file, this::load, "ClusterPasswordWatcher");
+        } catch (IOException e) {
+            logger.warn("Could not watch {} for changes", file, e);
+        }
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    public void stop() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Reads the password from the file. If the file cannot be read, the previous
+     * password is kept.
+     */
+    private void load() {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            Document document = factory.newDocumentBuilder().parse(file.toFile());
+            Element beans = (Element) document.getElementsByTagName("beans").item(0);
+            NodeList properties = beans.getElementsByTagName("property");
+            String value = null;
+            for (int i = 0; i < properties.getLength(); i++) {
+                Element property = (Element) properties.item(i);
+                if ("password".equals(property.getAttribute("name"))) {
+                    value = property.getAttribute("value");
+                    break;
+                }
+            }
+            if (value == null) {
+                logger.warn("No cluster password property found in {}", file);
+            } else {
+                password = value.getBytes(StandardCharsets.UTF_8);
+                logger.debug("Cluster password loaded from {}", file);
+            }
+        } catch (Exception e) {
+            logger.error("It was not possible to read the cluster password from {}", file, e);
+        }
+    }
+
+    /**
+     * Checks the given password against the cluster password.
+     *
+     * @param candidate
+     *            The provided password to validate
+     * @return true if it matches, otherwise false
+     */
+    public boolean matches(String candidate) {
+        byte[] expected = password;
+        if (expected == null || candidate == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, candidate.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,255 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.codec;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthData;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
+
+/**
+ * Streaming JSON codec for the remote server requests and responses. Requests
+ * are written field by field into a per-thread character buffer which is reused
+ * between calls, and responses are read with a JsonReader which only extracts
+ * the `result`, `url` and `ttl` fields, without building a JSON tree. No stream
+ * encoder or decoder is involved, as each would allocate an 8 KiB buffer per
+ * call.
+ */
+public final class AuthCodec {
+
+    /**
+     * Buffers larger than this, in characters, are not kept for reuse
+     */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private AuthCodec() {
+    }
+
+    /**
+     * Decodes a response body into a value.
+     *
+     * @param <T>
+     *            decoded type
+     */
+    @FunctionalInterface
+    public interface Decoder<T> {
+
+        T decode(byte[] body) throws IOException;
+
+    }
+
+    /**
+     * Encodes a request as a JSON object. Null fields are omitted.
+     *
+     * @param data
+     *            the request
+     * @return UTF-8 encoded JSON
+     */
+    public static byte[] encode(AuthData data) {
+        Buffer buffer = BUFFER.get();
+        try (JsonWriter writer = buffer.writer()) {
+            write(writer, data);
+        } catch (IOException e) {
+            // not expected when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return buffer.release();
+    }
+
+    /**
+     * Encodes a list of requests as a JSON array.
+     *
+     * @param items
+     *            the requests
+     * @return UTF-8 encoded JSON
+     */
+    public static byte[] encode(List<AuthData> items) {
+        Buffer buffer = BUFFER.get();
+        try (JsonWriter writer = buffer.writer()) {
+            writer.beginArray();
+            for (AuthData data : items) {
+                write(writer, data);
+            }
+            writer.endArray();
+        } catch (IOException e) {
+            // not expected when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return buffer.release();
+    }
+
+    private static void write(JsonWriter writer, AuthData data) throws IOException {
+        writer.beginObject();
+        writeField(writer, "type", data.getType());
+        writeField(writer, "username", data.getUsername());
+        writeField(writer, "password", data.getPassword());
+        writeField(writer, "streamID", data.getStreamID());
+        writeField(writer, "token", data.getToken());
+        writer.endObject();
+    }
+
+    private static void writeField(JsonWriter writer, String name, String value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value);
+        }
+    }
+
+    /**
+     * Decodes a response object. The body is kept by the result, so the complete
+     * response can still be parsed on demand.
+     *
+     * @param body
+     *            UTF-8 encoded JSON
+     * @return AuthResult
+     * @throws IOException
+     *             if the body is not a JSON object
+     */
+    public static AuthResult decodeResult(byte[] body) throws IOException {
+        try (JsonReader reader = reader(body)) {
+            return readResult(reader, body);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed response", e);
+        }
+    }
+
+    /**
+     * Decodes an array of response objects.
+     *
+     * @param body
+     *            UTF-8 encoded JSON
+     * @return list of AuthResult
+     * @throws IOException
+     *             if the body is not a JSON array of objects
+     */
+    public static List<AuthResult> decodeResults(byte[] body) throws IOException {
+        try (JsonReader reader = reader(body)) {
+            List<AuthResult> results = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                results.add(readResult(reader, null));
+            }
+            reader.endArray();
+            return results;
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed response", e);
+        }
+    }
+
+    private static JsonReader reader(byte[] body) {
+        JsonReader reader = new JsonReader(new StringReader(new String(body, StandardCharsets.UTF_8)));
+        reader.setLenient(true);
+        return reader;
+    }
+
+    private static AuthResult readResult(JsonReader reader, byte[] body) throws IOException {
+        boolean result = false;
+        String url = null;
+        long ttl = -1L;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if ("result".equals(name) && token == JsonToken.BOOLEAN) {
+                result = reader.nextBoolean();
+            } else if ("result".equals(name) && (token == JsonToken.STRING || token == JsonToken.NUMBER)) {
+                result = Boolean.parseBoolean(reader.nextString());
+            } else if ("url".equals(name) && (token == JsonToken.STRING || token == JsonToken.NUMBER)) {
+                url = reader.nextString();
+            } else if ("url".equals(name) && token == JsonToken.BOOLEAN) {
+                url = String.valueOf(reader.nextBoolean());
+            } else if ("ttl".equals(name) && token == JsonToken.NUMBER) {
+                ttl = (long) reader.nextDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new AuthResult(result, url, ttl, body);
+    }
+
+    /**
+     * Reusable output buffer.
+     */
+    private static final class Buffer extends Writer {
+
+        private StringBuilder chars = new StringBuilder(256);
+
+        JsonWriter writer() {
+            chars.setLength(0);
+            return new JsonWriter(this);
+        }
+
+        byte[] release() {
+            byte[] bytes = chars.toString().getBytes(StandardCharsets.UTF_8);
+            if (chars.capacity() > MAX_RETAINED_BUFFER) {
+                chars = new StringBuilder(256);
+            }
+            return bytes;
+        }
+
+        @Override
+        public void write(int c) {
+            chars.append((char) c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            chars.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            chars.append(str, off, off + len);
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            chars.append(csq);
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,244 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Instrumented executor for lazy authentication tasks. Tasks either run on a
+ * bounded pool with a bounded queue, or on virtual threads when running on a
+ * JDK which supports them (21+). When the bounded pool and its queue are full,
+ * the rejection policy decides whether the submitting thread runs the task
+ * (`caller-runs`) or the task is rejected (`abort`). Latencies are measured
+ * from the time given when submitting, so they may include the work preceding
+ * the task.
+ */
+public class LazyAuthExecutor implements Executor {
+
+    private static Logger logger = LoggerFactory.getLogger(LazyAuthExecutor.class);
+
+    private final ExecutorService executor;
+
+    /**
+     * The bounded pool, null when running on virtual threads
+     */
+    private final ThreadPoolExecutor pool;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder totalLatency = new LongAdder();
+
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Creates an executor.
+     *
+     * @param type
+     *            `bounded` or `virtual`
+     * @param poolSize
+     *            number of threads of the bounded pool
+     * @param queueSize
+     *            maximum number of tasks waiting for a thread of the bounded pool
+     * @param rejectionPolicy
+     *            `caller-runs` or `abort`
+     */
+    public LazyAuthExecutor(String type, int poolSize, int queueSize, String rejectionPolicy) {
+        ExecutorService virtual = "virtual".equalsIgnoreCase(type) ? newVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            executor = virtual;
+            pool = null;
+        } else {
+            final boolean callerRuns = !"abort".equalsIgnoreCase(rejectionPolicy);
+            RejectedExecutionHandler handler = (r, ex) -> {
+                rejected.increment();
+                if (callerRuns && !ex.isShutdown()) {
+                    r.run();
+                } else {
+                    throw new RejectedExecutionException("Lazy authentication queue is full");
+                }
+            };
+            int threads = Math.max(1, poolSize);
+            pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                    new NamedThreadFactory(), handler);
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+    }
+
+    /**
+     * Creates a virtual thread per task executor, looked up reflectively as the
+     * plugin is built for Java 11.
+     *
+     * @return ExecutorService or null if virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            logger.warn("Virtual threads are not supported by this JVM, using a bounded pool");
+        }
+        return null;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(task, System.nanoTime());
+    }
+
+    /**
+     * Executes a task, measuring its latency from the given time.
+     *
+     * @param task
+     *            the task
+     * @param submitted
+     *            {@link System#nanoTime()} at which the work leading to the task
+     *            started
+     * @throws RejectedExecutionException
+     *             if the queue is full and the rejection policy is `abort`, or the
+     *             executor is shut down
+     */
+    public void execute(Runnable task, long submitted) {
+        queued.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    long latency = System.nanoTime() - submitted;
+                    completed.increment();
+                    totalLatency.add(latency);
+                    maxLatency.accumulateAndGet(latency, Math::max);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops accepting tasks and waits briefly for queued tasks to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isVirtual() {
+        return pool == null;
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     *
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Returns the number of tasks currently running.
+     *
+     * @return active tasks
+     */
+    public int getActiveTasks() {
+        return active.get();
+    }
+
+    public long getCompletedTasks() {
+        return completed.sum();
+    }
+
+    public long getRejectedTasks() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the average time in milliseconds from the submit time of a task
+     * until it completed.
+     *
+     * @return average latency
+     */
+    public double getAverageTaskLatency() {
+        long count = completed.sum();
+        return (count > 0) ? totalLatency.sum() / (count * 1000000d) : 0d;
+    }
+
+    /**
+     * Returns the longest time in milliseconds from the submit time of a task
+     * until it completed.
+     *
+     * @return maximum latency
+     */
+    public double getMaxTaskLatency() {
+        return maxLatency.get() / 1000000d;
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "RoundTripLazyAuth-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
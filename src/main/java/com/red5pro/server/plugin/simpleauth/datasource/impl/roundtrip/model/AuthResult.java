@@ -0,0 +1,134 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Outcome of a validation request made to the remote server, holding the
+ * extracted `result`, `url` and optional `ttl` values. The complete JSON
+ * payload returned by the server is only parsed if requested.
+ */
+public class AuthResult {
+
+    private final boolean result;
+
+    private final String url;
+
+    /**
+     * Time in seconds the remote server allows this result to be cached, or -1 if
+     * not specified
+     */
+    private final long ttl;
+
+    /**
+     * The raw response body, null if not available
+     */
+    private final byte[] body;
+
+    private volatile JsonObject response;
+
+    public AuthResult(boolean result, String url, long ttl, byte[] body) {
+        this.result = result;
+        this.url = url;
+        this.ttl = ttl;
+        this.body = body;
+    }
+
+    /**
+     * Returns a result denying access, used when the remote server could not be
+     * reached or replied with an error.
+     *
+     * @return denied AuthResult
+     */
+    public static AuthResult denied() {
+        return new AuthResult(false, null, -1L, null);
+    }
+
+    /**
+     * Returns a result allowing access, used when access is granted without
+     * consulting the remote server.
+     *
+     * @return allowed AuthResult
+     */
+    public static AuthResult allowed() {
+        return new AuthResult(true, null, -1L, null);
+    }
+
+    public boolean isResult() {
+        return result;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean hasUrl() {
+        return url != null;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Returns the JSON payload returned by the server. If the raw body is not
+     * available, a payload holding the extracted values is returned.
+     *
+     * @return JsonObject
+     */
+    public JsonObject getResponse() {
+        JsonObject json = response;
+        if (json == null) {
+            JsonElement parsed = (body != null) ? new JsonParser().parse(new String(body, StandardCharsets.UTF_8)) : null;
+            if (parsed != null && parsed.isJsonObject()) {
+                json = parsed.getAsJsonObject();
+            } else {
+                json = new JsonObject();
+                json.add("result", new JsonPrimitive(result));
+                if (url != null) {
+                    json.add("url", new JsonPrimitive(url));
+                }
+                if (ttl >= 0) {
+                    json.add("ttl", new JsonPrimitive(ttl));
+                }
+            }
+            response = json;
+        }
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthResult [result=" + result + ", url=" + url + ", ttl=" + ttl + "]";
+    }
+
+}
@@ -25,6 +25,8 @@
 //
 package com.red5pro.server.plugin.simpleauth.impl;
 
+import java.nio.file.Paths;
+
 import org.red5.server.api.IConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +35,7 @@ import com.red5pro.server.plugin.simpleauth.AuthenticatorType;
 import com.red5pro.server.plugin.simpleauth.Configuration;
 import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
 import com.red5pro.server.plugin.simpleauth.interfaces.ISimpleAuthAuthenticator;
+import com.red5pro.server.plugin.simpleauth.interfaces.IUsernameSource;
 import com.red5pro.server.so.ISharedObjectCapableConnection;
 import com.red5pro.server.stream.mpegts.IMPEGTSConnection;
 import com.red5pro.server.stream.restreamer.IConnectorShell;
@@ -55,7 +58,8 @@ import com.red5pro.server.stream.webrtc.IWebRTCConnection;
  * </pre>
  *
  * implementation for a incoming IConnection object based on connection type and
- * configuration settings.
+ * configuration settings. The settings are compiled into an immutable
+ * ProviderSnapshot which is replaced as a whole when they change.
  *
  * @author Rajdeep Rath
  *
@@ -65,60 +69,30 @@ public class AuthenticatorProvider {
     private static Logger logger = LoggerFactory.getLogger(AuthenticatorProvider.class);
 
     /**
-     * The IAuthenticationValidator object to pass on to authenticator
-     * implementations
-     */
-    IAuthenticationValidator validator;
-
-    /**
-     * Global settings for enabling or disabling authentication
-     */
-    boolean enabled;
-
-    /**
-     * Authenticator implementation reference for rtmp
-     */
-    ISimpleAuthAuthenticator rtmpAuthenticator;
-
-    /**
-     * Authenticator implementation reference for rtsp
-     */
-    ISimpleAuthAuthenticator rtspAuthenticator;
-
-    /**
-     * Authenticator implementation reference for webrtc
-     */
-    ISimpleAuthAuthenticator webRtcAuthenticator;
-
-    /**
-     * Authenticator implementation reference for unconditional reject
-     */
-    ISimpleAuthAuthenticator grumpyAuthenticator;
-
-    /**
-     * Authenticator implementation reference for unconditional allow
+     * Authenticator type per connection class, computed once per class
      */
-    ISimpleAuthAuthenticator happyAuthenticator;
-
-    /**
-     * Authenticator implementation reference for SRT
-     */
-    ISimpleAuthAuthenticator srtAuthenticator;
+    static final ClassValue<AuthenticatorType> CONNECTION_TYPES = new ClassValue<AuthenticatorType>() {
+        @Override
+        protected AuthenticatorType computeValue(Class<?> type) {
+            return classify(type);
+        }
+    };
 
     /**
-     * Authenticator implementation reference for mpegts
+     * Compiled configuration in use, replaced as a whole on every change
      */
-    ISimpleAuthAuthenticator mpegtsAuthenticator;
+    private volatile ProviderSnapshot snapshot = ProviderSnapshot.EMPTY;
 
     /**
-     * Authenticator implementation reference for http
+     * The configured IAuthenticationValidator, passed on to the authenticators by
+     * {@link #initialize()}; the one in use is the snapshot's
      */
-    ISimpleAuthAuthenticator httpAuthenticator;
+    private IAuthenticationValidator validator;
 
     /**
-     * Authenticator implementation reference for websocket
+     * Global settings for enabling or disabling authentication
      */
-    ISimpleAuthAuthenticator wsAuthenticator;
+    private boolean enabled;
 
     /**
      * Global settings for enabling or disabling rtmp authentication
@@ -166,6 +140,27 @@ public class AuthenticatorProvider {
      */
     private String allowedRtmpAgents;
 
+    /**
+     * Name of the provider, the scope name or "default"
+     */
+    private String name = "default";
+
+    /**
+     * Enables rejecting unknown usernames before the validator is consulted
+     */
+    private boolean usernamePrefilter;
+
+    /**
+     * Path of a file listing the known usernames; when not set the usernames are
+     * taken from the validator
+     */
+    private String usernamePrefilterFile;
+
+    /**
+     * False positive rate of the username prefilter
+     */
+    private double usernamePrefilterFalsePositiveRate = 0.01;
+
     /**
      * Constructor for AuthenticatorProvider
      */
@@ -191,39 +186,140 @@ public class AuthenticatorProvider {
         this.setSecureWS(config.isWs());
         this.setRtmpAcceptsQueryParamsEnabled(config.isRtmpAllowQueryParamsEnabled());
         this.setAllowedRtmpAgents(config.getAllowedRtmpAgents());
+        this.setUsernamePrefilter(config.isUsernamePrefilter());
+        this.setUsernamePrefilterFile(config.getUsernamePrefilterFile());
+        this.setUsernamePrefilterFalsePositiveRate(config.getUsernamePrefilterFalsePositiveRate());
     }
 
     /**
-     * Entry point
+     * Entry point. Compiles the current settings into a new set of
+     * authenticators and puts them in use at once; connects in progress finish
+     * with the previous set.
      */
-    public void initialize() {
+    public synchronized void initialize() {
+        ProviderSnapshot previous = snapshot;
+        if (previous.prefilter != null) {
+            // the replacement registers under the same name
+            previous.prefilter.unregister();
+        }
+        IAuthenticationValidator source = validator;
+        // unknown username rejection
+        UsernamePrefilter prefilter = null;
+        if (usernamePrefilter) {
+            prefilter = createPrefilter();
+            if (prefilter != null) {
+                prefilter.initialize();
+                source = prefilter;
+            }
+        }
+        ISimpleAuthAuthenticator[] authenticators = new ISimpleAuthAuthenticator[AuthenticatorType.values().length];
         // rtmp
-        rtmpAuthenticator = new RTMPAuthenticator(rtmpAcceptsQueryParamsEnabled, allowedRtmpAgents);
-        rtmpAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.RTMP.ordinal()] = new RTMPAuthenticator(rtmpAcceptsQueryParamsEnabled, allowedRtmpAgents);
         // rtsp
-        rtspAuthenticator = new RTSPAuthenticator();
-        rtspAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.RTSP.ordinal()] = new RTSPAuthenticator();
         // webrtc
-        webRtcAuthenticator = new RTCAuthenticator();
-        webRtcAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.RTC.ordinal()] = new RTCAuthenticator();
         // blocking
-        grumpyAuthenticator = new BlockerAuthenticator();
-        grumpyAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.GRUMPY.ordinal()] = new BlockerAuthenticator();
         // pass-thru
-        happyAuthenticator = new PassThruAuthenticator();
-        happyAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.HAPPY.ordinal()] = new PassThruAuthenticator();
         // srt
-        srtAuthenticator = new SRTAuthenticator();
-        srtAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.SRT.ordinal()] = new SRTAuthenticator();
         // mpeg-ts
-        mpegtsAuthenticator = new MpegTsAuthenticator();
-        mpegtsAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.MPEGTS.ordinal()] = new MpegTsAuthenticator();
         // http
-        httpAuthenticator = new HTTPAuthenticator();
-        httpAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.HTTP.ordinal()] = new HTTPAuthenticator();
         // ws
-        wsAuthenticator = new WebSocketAuthenticator();
-        wsAuthenticator.setDataSource(validator);
+        authenticators[AuthenticatorType.WS.ordinal()] = new WebSocketAuthenticator();
+        for (ISimpleAuthAuthenticator authenticator : authenticators) {
+            authenticator.setDataSource(source);
+        }
+        snapshot = new ProviderSnapshot(enabled, secureMask(), validator, prefilter, authenticators);
+        if (previous.prefilter != null) {
+            previous.prefilter.close();
+        }
+    }
+
+    /**
+     * Applies a configuration and puts it in use at once, without a window in
+     * which connections go unauthenticated.
+     *
+     * @param config
+     *            The Configuration object
+     */
+    public synchronized void reconfigure(Configuration config) {
+        enabled = config.isActive();
+        validator = config.getValidator();
+        secureRTMP = config.isRtmp();
+        secureRTSP = config.isRtsp();
+        secureRTC = config.isRtc();
+        secureSRT = config.isSrt();
+        secureMPEGTS = config.isMpegts();
+        secureHTTP = config.isHttp();
+        secureWS = config.isWs();
+        rtmpAcceptsQueryParamsEnabled = config.isRtmpAllowQueryParamsEnabled();
+        allowedRtmpAgents = config.getAllowedRtmpAgents();
+        usernamePrefilter = config.isUsernamePrefilter();
+        usernamePrefilterFile = config.getUsernamePrefilterFile();
+        usernamePrefilterFalsePositiveRate = config.getUsernamePrefilterFalsePositiveRate();
+        initialize();
+    }
+
+    /**
+     * Returns the secured protocols as a bitmask.
+     *
+     * @return secure mask
+     */
+    private int secureMask() {
+        int mask = 0;
+        mask |= secureRTMP ? ProviderSnapshot.bit(AuthenticatorType.RTMP) : 0;
+        mask |= secureRTSP ? ProviderSnapshot.bit(AuthenticatorType.RTSP) : 0;
+        mask |= secureRTC ? ProviderSnapshot.bit(AuthenticatorType.RTC) : 0;
+        mask |= secureSRT ? ProviderSnapshot.bit(AuthenticatorType.SRT) : 0;
+        mask |= secureMPEGTS ? ProviderSnapshot.bit(AuthenticatorType.MPEGTS) : 0;
+        mask |= secureHTTP ? ProviderSnapshot.bit(AuthenticatorType.HTTP) : 0;
+        mask |= secureWS ? ProviderSnapshot.bit(AuthenticatorType.WS) : 0;
+        return mask;
+    }
+
+    /**
+     * Puts changed enabled or secure settings in use, keeping the current
+     * authenticators. Has no effect before the provider is initialized.
+     */
+    private synchronized void updateSnapshot() {
+        if (snapshot != ProviderSnapshot.EMPTY) {
+            snapshot = snapshot.with(enabled, secureMask());
+        }
+    }
+
+    /**
+     * Creates the username prefilter from the usernames file if one is
+     * configured, otherwise from the validator if it can list its usernames.
+     *
+     * @return the prefilter or null if there is no username source
+     */
+    private UsernamePrefilter createPrefilter() {
+        IUsernameSource usernames;
+        if (usernamePrefilterFile != null && !usernamePrefilterFile.isEmpty()) {
+            usernames = new UsernameFileSource(Paths.get(usernamePrefilterFile));
+        } else if (validator instanceof IUsernameSource) {
+            usernames = (IUsernameSource) validator;
+        } else {
+            logger.warn("Username prefilter for {} disabled, validator {} cannot list usernames and no usernames file is set", name,
+                    validator);
+            return null;
+        }
+        return new UsernamePrefilter(validator, usernames, usernamePrefilterFalsePositiveRate, name);
+    }
+
+    /**
+     * Releases resources held by the provider.
+     */
+    public synchronized void close() {
+        UsernamePrefilter prefilter = snapshot.prefilter;
+        if (prefilter != null) {
+            prefilter.close();
+        }
     }
 
     /**
@@ -246,56 +342,55 @@ public class AuthenticatorProvider {
      *         connection
      */
     public ISimpleAuthAuthenticator getAuthenticator(IConnection connection) {
-        if (!enabled) {
-            return happyAuthenticator;
-        } else {
-            logger.info("getAuthenticator for {}", connection);
-            if (connection instanceof IRTSPConnection) {
-                if (secureRTSP) {
-                    return rtspAuthenticator;
-                } else {
-                    return happyAuthenticator;
-                }
-            } else if (connection instanceof IWebRTCConnection) {
-                if (secureRTC) {
-                    return webRtcAuthenticator;
-                } else {
-                    return happyAuthenticator;
-                }
-            } else if (connection instanceof IMPEGTSConnection) {
-                if (secureMPEGTS) {
-                    return mpegtsAuthenticator;
-                } else {
-                    return happyAuthenticator;
-                }
-            } else if (connection instanceof ISRTConnection) {
-                if (secureSRT) {
-                    return srtAuthenticator;
-                } else {
-                    return happyAuthenticator;
-                }
-            } else if (connection instanceof IConnectorShell) {
-                return happyAuthenticator;
-            } else if (connection.getClass().getName().contains("RTMP")) {
-                logger.info("RTMP based connection detected");
-                if (secureRTMP) {
-                    return rtmpAuthenticator;
-                } else {
-                    return happyAuthenticator;
-                }
-            } else if (connection instanceof ISharedObjectCapableConnection) {
-                // XXX on the subject of SO support, we'll allow intra-node
-                // comms via ISharedObjectCapableConnection type, but this
-                // interface is not yet in commons, but auth links mega, so its
-                // ok for now. Also returning "happy" since SO checks are not
-                // enforced at the transport protocol level.
-                return happyAuthenticator;
-            } else {
-                // unknown protocol
-                logger.error("Unknown connection type {}", connection.getClass().getCanonicalName());
-                return grumpyAuthenticator;
-            }
+        logger.debug("getAuthenticator for {}", connection);
+        return snapshot.get(connection);
+    }
+
+    /**
+     * Returns the ISimpleAuthAuthenticator used for connections of a class.
+     *
+     * @param connectionClass
+     *            the connection class
+     * @return the authenticator for connections of the class
+     */
+    ISimpleAuthAuthenticator getAuthenticator(Class<? extends IConnection> connectionClass) {
+        return snapshot.get(connectionClass);
+    }
+
+    /**
+     * Returns the AuthenticatorType for a connection class. The checks are made
+     * in order of precedence, as a connection class may implement more than one
+     * of the interfaces.
+     *
+     * @param connectionClass
+     *            the connection class
+     * @return the type of authenticator for the class
+     */
+    static AuthenticatorType classify(Class<?> connectionClass) {
+        if (IRTSPConnection.class.isAssignableFrom(connectionClass)) {
+            return AuthenticatorType.RTSP;
+        } else if (IWebRTCConnection.class.isAssignableFrom(connectionClass)) {
+            return AuthenticatorType.RTC;
+        } else if (IMPEGTSConnection.class.isAssignableFrom(connectionClass)) {
+            return AuthenticatorType.MPEGTS;
+        } else if (ISRTConnection.class.isAssignableFrom(connectionClass)) {
+            return AuthenticatorType.SRT;
+        } else if (IConnectorShell.class.isAssignableFrom(connectionClass)) {
+            return AuthenticatorType.HAPPY;
+        } else if (connectionClass.getName().contains("RTMP")) {
+            logger.info("RTMP based connection class detected {}", connectionClass.getName());
+            return AuthenticatorType.RTMP;
+        } else if (ISharedObjectCapableConnection.class.isAssignableFrom(connectionClass)) {
+            // XXX on the subject of SO support, we'll allow intra-node
+            // comms via ISharedObjectCapableConnection type, but this
+            // interface is not yet in commons, but auth links mega, so its
+            // ok for now. Also returning "happy" since SO checks are not
+            // enforced at the transport protocol level.
+            return AuthenticatorType.HAPPY;
         }
+        // unknown protocol
+        logger.error("Unknown connection type {}", connectionClass.getCanonicalName());
+        return AuthenticatorType.GRUMPY;
     }
 
     /**
@@ -307,68 +402,32 @@ public class AuthenticatorProvider {
      * @return An ISimpleAuthAuthenticator which will be used to authenticate
      */
     public ISimpleAuthAuthenticator getAuthenticator(AuthenticatorType type) {
-        switch (type) {
-            case RTMP:
-                if (secureRTMP) {
-                    return rtmpAuthenticator;
-                }
-                return happyAuthenticator;
-            case RTSP:
-                if (secureRTSP) {
-                    return rtspAuthenticator;
-                }
-                return happyAuthenticator;
-            case RTC:
-                if (secureRTC) {
-                    return webRtcAuthenticator;
-                }
-                return happyAuthenticator;
-            case MPEGTS:
-                if (secureMPEGTS) {
-                    return mpegtsAuthenticator;
-                }
-                return happyAuthenticator;
-            case SRT:
-                if (secureSRT) {
-                    return srtAuthenticator;
-                }
-                return happyAuthenticator;
-            case HTTP:
-                if (secureHTTP) {
-                    return httpAuthenticator;
-                }
-                return happyAuthenticator;
-            case WS:
-                if (secureWS) {
-                    return wsAuthenticator;
-                }
-                return happyAuthenticator;
-            case HAPPY:
-                return happyAuthenticator;
-            default:
-                logger.error("Unknown type {}", type);
-            case GRUMPY:
-                return grumpyAuthenticator;
-        }
+        return snapshot.get(type);
     }
 
     /**
-     * Returns the value of validator
+     * Returns the validator in use, the one the authenticators were compiled
+     * with.
      *
-     * @return An IAuthenticationValidator object
+     * @return An IAuthenticationValidator object, or null until the provider is
+     *         initialized
      */
     public IAuthenticationValidator getValidator() {
-        return validator;
+        return snapshot.validator;
     }
 
     /**
-     * Sets the value of validator
+     * Sets the validator. Once the provider is initialized, the authenticators
+     * are compiled again with the new validator and put in use at once.
      *
      * @param validator
      *            The IAuthenticationValidator to set
      */
-    public void setValidator(IAuthenticationValidator validator) {
+    public synchronized void setValidator(IAuthenticationValidator validator) {
         this.validator = validator;
+        if (snapshot != ProviderSnapshot.EMPTY) {
+            initialize();
+        }
     }
 
     /**
@@ -388,6 +447,7 @@ public class AuthenticatorProvider {
      */
     public void setSecureRTMP(boolean secureRTMP) {
         this.secureRTMP = secureRTMP;
+        updateSnapshot();
     }
 
     /**
@@ -407,6 +467,7 @@ public class AuthenticatorProvider {
      */
     public void setSecureRTSP(boolean secureRTSP) {
         this.secureRTSP = secureRTSP;
+        updateSnapshot();
     }
 
     /**
@@ -426,6 +487,7 @@ public class AuthenticatorProvider {
      */
     public void setSecureRTC(boolean secureRTC) {
         this.secureRTC = secureRTC;
+        updateSnapshot();
     }
 
     /**
@@ -445,6 +507,7 @@ public class AuthenticatorProvider {
      */
     public void setSecureSRT(boolean secureSRT) {
         this.secureSRT = secureSRT;
+        updateSnapshot();
     }
 
     /**
@@ -464,6 +527,7 @@ public class AuthenticatorProvider {
      */
     public void setSecureMPEGTS(boolean secureMPEGTS) {
         this.secureMPEGTS = secureMPEGTS;
+        updateSnapshot();
     }
 
     /**
@@ -483,6 +547,7 @@ public class AuthenticatorProvider {
      */
     public void setSecureHTTP(boolean secureHTTP) {
         this.secureHTTP = secureHTTP;
+        updateSnapshot();
     }
 
     /**
@@ -502,6 +567,7 @@ public class AuthenticatorProvider {
      */
     public void setSecureWS(boolean secureWS) {
         this.secureWS = secureWS;
+        updateSnapshot();
     }
 
     /**
@@ -510,7 +576,9 @@ public class AuthenticatorProvider {
      * @return true if the component is enabled, otherwise false
      */
     public boolean isEnabled() {
-        return enabled;
+        ProviderSnapshot current = snapshot;
+        // report what the authenticators enforce once there are any
+        return (current != ProviderSnapshot.EMPTY) ? current.enabled : enabled;
     }
 
     /**
@@ -521,6 +589,7 @@ public class AuthenticatorProvider {
      */
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
+        updateSnapshot();
     }
 
     /**
@@ -561,4 +630,45 @@ public class AuthenticatorProvider {
         this.allowedRtmpAgents = allowedRtmpAgents;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isUsernamePrefilter() {
+        return usernamePrefilter;
+    }
+
+    public void setUsernamePrefilter(boolean usernamePrefilter) {
+        this.usernamePrefilter = usernamePrefilter;
+    }
+
+    public String getUsernamePrefilterFile() {
+        return usernamePrefilterFile;
+    }
+
+    public void setUsernamePrefilterFile(String usernamePrefilterFile) {
+        this.usernamePrefilterFile = usernamePrefilterFile;
+    }
+
+    public double getUsernamePrefilterFalsePositiveRate() {
+        return usernamePrefilterFalsePositiveRate;
+    }
+
+    public void setUsernamePrefilterFalsePositiveRate(double usernamePrefilterFalsePositiveRate) {
+        this.usernamePrefilterFalsePositiveRate = usernamePrefilterFalsePositiveRate;
+    }
+
+    /**
+     * Returns the username prefilter
+     *
+     * @return the prefilter or null if not enabled
+     */
+    public UsernamePrefilter getPrefilter() {
+        return snapshot.prefilter;
+    }
+
 }
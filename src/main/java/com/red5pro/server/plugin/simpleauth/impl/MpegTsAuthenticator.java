@@ -25,17 +25,13 @@
 //
 package com.red5pro.server.plugin.simpleauth.impl;
 
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.red5.server.api.IConnection;
 import org.red5.server.api.Red5;
 
 import com.red5pro.server.plugin.simpleauth.interfaces.SimpleAuthAuthenticatorAdapter;
+import com.red5pro.server.plugin.simpleauth.utils.ConnectParams;
 
 /**
  * This class is a authenticator implementation for MPEG-TS and is based on
@@ -59,7 +55,7 @@ public class MpegTsAuthenticator extends SimpleAuthAuthenticatorAdapter {
         // they expect it
         Red5.setConnectionLocal(connection);
         try {
-            Map<String, Object> map = getParametersMap(connection.getConnectParams());
+            Map<String, Object> map = ConnectParams.decoded(connection.getConnectParams());
             if (!map.containsKey("username") || !map.containsKey("password")) {
                 throw new Exception("Missing connection parameter(s)");
             }
@@ -74,33 +70,4 @@ public class MpegTsAuthenticator extends SimpleAuthAuthenticatorAdapter {
         return false;
     }
 
-    /**
-     * Extracts connections params from query string for clients and returns as a
-     * cleaned up Map
-     *
-     * @param content
-     *            The raw query params map
-     * @return processed parameters map
-     */
-    private Map<String, Object> getParametersMap(Map<String, Object> content) {
-        Map<String, Object> map = new HashMap<String, Object>();
-        Iterator<Entry<String, Object>> it = content.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, Object> pair = it.next();
-            String key = pair.getKey();
-            String value;
-            String charset = StandardCharsets.UTF_8.name();
-            try {
-                value = URLDecoder.decode(String.valueOf(pair.getValue()), charset);
-            } catch (Exception e) {
-                value = String.valueOf(pair.getValue());
-            }
-            if (key.indexOf("?") == 0) {
-                key = key.replace("?", "");
-            }
-            map.put(key, value);
-        }
-        return map;
-    }
-
 }
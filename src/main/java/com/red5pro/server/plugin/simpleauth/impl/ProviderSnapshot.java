@@ -0,0 +1,144 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.impl;
+
+import org.red5.server.api.IConnection;
+
+import com.red5pro.server.plugin.simpleauth.AuthenticatorType;
+import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
+import com.red5pro.server.plugin.simpleauth.interfaces.ISimpleAuthAuthenticator;
+
+/**
+ * Immutable, compiled state of an AuthenticatorProvider: the enabled state, the
+ * secured protocols as a bitmask of AuthenticatorType ordinals, the validator
+ * and the authenticators, already resolved against the bitmask. A provider
+ * publishes a new snapshot with a single volatile write, so a connection is
+ * always authenticated against one consistent configuration.
+ */
+final class ProviderSnapshot {
+
+    private static final AuthenticatorType[] TYPES = AuthenticatorType.values();
+
+    static final ProviderSnapshot EMPTY = new ProviderSnapshot(false, 0, null, null, new ISimpleAuthAuthenticator[TYPES.length]);
+
+    final boolean enabled;
+
+    final int secureMask;
+
+    final IAuthenticationValidator validator;
+
+    final UsernamePrefilter prefilter;
+
+    /**
+     * Authenticator instance per type
+     */
+    private final ISimpleAuthAuthenticator[] authenticators;
+
+    /**
+     * Authenticator to use per type, the pass-thru one for unsecured types
+     */
+    private final ISimpleAuthAuthenticator[] resolved;
+
+    /**
+     * Authenticator to use per connection class
+     */
+    private final ClassValue<ISimpleAuthAuthenticator> dispatch = new ClassValue<ISimpleAuthAuthenticator>() {
+        @Override
+        protected ISimpleAuthAuthenticator computeValue(Class<?> type) {
+            return ProviderSnapshot.this.get(AuthenticatorProvider.CONNECTION_TYPES.get(type));
+        }
+    };
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param enabled
+     *            whether authentication is enabled
+     * @param secureMask
+     *            bitmask of secured types, see {@link #bit(AuthenticatorType)}
+     * @param validator
+     *            the validator
+     * @param prefilter
+     *            the username prefilter or null
+     * @param authenticators
+     *            authenticator instance per AuthenticatorType ordinal
+     */
+    ProviderSnapshot(boolean enabled, int secureMask, IAuthenticationValidator validator, UsernamePrefilter prefilter,
+            ISimpleAuthAuthenticator[] authenticators) {
+        this.enabled = enabled;
+        this.secureMask = secureMask;
+        this.validator = validator;
+        this.prefilter = prefilter;
+        this.authenticators = authenticators;
+        this.resolved = new ISimpleAuthAuthenticator[TYPES.length];
+        ISimpleAuthAuthenticator happy = authenticators[AuthenticatorType.HAPPY.ordinal()];
+        for (AuthenticatorType type : TYPES) {
+            boolean secured = type == AuthenticatorType.GRUMPY || (secureMask & bit(type)) != 0;
+            resolved[type.ordinal()] = secured ? authenticators[type.ordinal()] : happy;
+        }
+    }
+
+    /**
+     * Returns the bit of a type in the secure mask.
+     *
+     * @param type
+     *            the type
+     * @return the bit
+     */
+    static int bit(AuthenticatorType type) {
+        return 1 << type.ordinal();
+    }
+
+    /**
+     * Returns a snapshot sharing the authenticators of this one with a different
+     * enabled state and secure mask.
+     *
+     * @param enabled
+     *            whether authentication is enabled
+     * @param secureMask
+     *            bitmask of secured types
+     * @return the new snapshot
+     */
+    ProviderSnapshot with(boolean enabled, int secureMask) {
+        return new ProviderSnapshot(enabled, secureMask, validator, prefilter, authenticators);
+    }
+
+    ISimpleAuthAuthenticator get(AuthenticatorType type) {
+        return resolved[type.ordinal()];
+    }
+
+    ISimpleAuthAuthenticator get(IConnection connection) {
+        return get(connection.getClass());
+    }
+
+    ISimpleAuthAuthenticator get(Class<? extends IConnection> connectionClass) {
+        if (!enabled) {
+            return resolved[AuthenticatorType.HAPPY.ordinal()];
+        }
+        return dispatch.get(connectionClass);
+    }
+
+}
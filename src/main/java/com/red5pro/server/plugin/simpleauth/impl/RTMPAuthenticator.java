@@ -27,15 +27,14 @@ package com.red5pro.server.plugin.simpleauth.impl;
 
 import java.net.URLDecoder;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.red5.server.api.IConnection;
 import org.red5.server.api.Red5;
 
 import com.red5pro.server.plugin.simpleauth.interfaces.SimpleAuthAuthenticatorAdapter;
+import com.red5pro.server.plugin.simpleauth.utils.AgentMatcher;
+import com.red5pro.server.plugin.simpleauth.utils.ConnectParams;
 import com.red5pro.server.plugin.simpleauth.utils.Utils;
 
 /**
@@ -57,6 +56,11 @@ public class RTMPAuthenticator extends SimpleAuthAuthenticatorAdapter {
      */
     private String allowedRtmpAgents = "*";
 
+    /**
+     * Matcher compiled from <code>allowedRtmpAgents</code>
+     */
+    private volatile AgentMatcher agentMatcher = new AgentMatcher(allowedRtmpAgents);
+
     /**
      * Constructor for RTMPAuthenticator
      */
@@ -83,7 +87,7 @@ public class RTMPAuthenticator extends SimpleAuthAuthenticatorAdapter {
      */
     public RTMPAuthenticator(boolean allowQueryParams, String allowedRtmpAgents) {
         this.allowQueryParams = allowQueryParams;
-        this.allowedRtmpAgents = allowedRtmpAgents;
+        setAllowedRtmpAgents(allowedRtmpAgents);
     }
 
     @Override
@@ -118,7 +122,7 @@ public class RTMPAuthenticator extends SimpleAuthAuthenticatorAdapter {
             } else {
                 try {
                     // we wont look at arguments at all if {allowQueryParams} is enabled
-                    Map<String, Object> map = getParametersMap(connection.getConnectParams());
+                    Map<String, Object> map = ConnectParams.withQueryString(connection.getConnectParams());
                     // Handling a cluster-restreamer connection
                     if (map.containsKey("cluster-restreamer-context") && map.containsKey("cluster-restreamer-name")) {
                         if (map.containsKey("restreamer")) {
@@ -162,61 +166,15 @@ public class RTMPAuthenticator extends SimpleAuthAuthenticatorAdapter {
         return false;
     }
 
-    /**
-     * Extracts connections params from query string for clients and returns as a
-     * cleaned up Map
-     *
-     * @param content
-     *            The raw query params map
-     * @return processed parameters map
-     */
-    private Map<String, Object> getParametersMap(Map<String, Object> content) {
-        Map<String, Object> map = new HashMap<String, Object>();
-        Iterator<Entry<String, Object>> it = content.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, Object> pair = it.next();
-            String key = pair.getKey();
-            Object value = pair.getValue();
-            if (key.equals("queryString")) {
-                Map<String, Object> qmap = new HashMap<String, Object>();
-                String[] parameters = String.valueOf(value).split("&");
-                for (int i = 0; i < parameters.length; i++) {
-                    String[] param = String.valueOf(parameters[i]).split("=");
-                    String name = param[0];
-                    if (name.indexOf("?") == 0) {
-                        name = name.replace("?", "");
-                    }
-                    String val = param[1];
-                    qmap.put(name, val);
-                }
-                map.putAll(qmap);
-            }
-            map.put(key, value);
-        }
-        return map;
-    }
-
     /**
      * Checks and validates rtmp agent string.
      *
      * @param agentString
      *            The rtmp agent string to check
      * @return true if agent is allowed, otherwise false
-     * @throws Exception
      */
-    private boolean validateAgent(String agentString) throws Exception {
-        if (allowedRtmpAgents.equals("*")) {
-            return true;
-        } else {
-            String[] candidates = allowedRtmpAgents.split(";");
-            for (int i = 0; i < candidates.length; i++) {
-                String candidate = candidates[i].trim().toUpperCase();
-                if (agentString.toUpperCase().contains(candidate)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    private boolean validateAgent(String agentString) {
+        return agentMatcher.matches(agentString);
     }
 
     /**
@@ -236,6 +194,7 @@ public class RTMPAuthenticator extends SimpleAuthAuthenticatorAdapter {
      */
     public void setAllowedRtmpAgents(String allowedRtmpAgents) {
         this.allowedRtmpAgents = allowedRtmpAgents;
+        this.agentMatcher = new AgentMatcher(allowedRtmpAgents);
     }
 
 }
@@ -0,0 +1,102 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.impl;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.server.plugin.simpleauth.interfaces.IUsernameSource;
+import com.red5pro.server.plugin.simpleauth.utils.FileWatcher;
+
+/**
+ * Username source reading a plain text file with one username per line, such
+ * as a list periodically exported from the backend of a round-trip deployment.
+ * Blank lines and lines starting with # are ignored. The file is watched and
+ * the version changes whenever it is modified.
+ */
+public class UsernameFileSource implements IUsernameSource, Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(UsernameFileSource.class);
+
+    private final Path file;
+
+    private final FileWatcher watcher;
+
+    private volatile long version;
+
+    /**
+     * Creates a source for the given file.
+     *
+     * @param file
+     *            the usernames file
+     */
+    public UsernameFileSource(Path file) {
+        this.file = file;
+        FileWatcher fileWatcher = null;
+        try {
+            fileWatcher = new FileWatcher(file, () -> version++, "UsernamesWatcher");
+        } catch (IOException e) {
+            logger.warn("Could not watch {} for changes", file, e);
+        }
+        this.watcher = fileWatcher;
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> action) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && line.charAt(0) != '#') {
+                    action.accept(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading usernames from " + file, e);
+        }
+    }
+
+    @Override
+    public long getUsernamesVersion() {
+        return version;
+    }
+
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+}
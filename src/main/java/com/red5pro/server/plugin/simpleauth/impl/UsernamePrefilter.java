@@ -0,0 +1,277 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
+import com.red5pro.server.plugin.simpleauth.interfaces.IUsernameSource;
+import com.red5pro.server.plugin.simpleauth.utils.BloomFilter;
+
+/**
+ * Validator wrapper which rejects usernames that are not known to a username
+ * source before the wrapped validator is consulted. Known usernames are held
+ * in a Bloom filter, so a rejection costs a few hash computations, and an
+ * unknown username passes only at the filter's false positive rate.
+ * <p>
+ * When the source reports that its usernames changed, attempts are passed to
+ * the validator unfiltered until the filter has been rebuilt in the
+ * background, so newly added users are never rejected. Attempts without a
+ * username, and cluster restreamer attempts, are always passed on.
+ * </p>
+ */
+public class UsernamePrefilter implements IAuthenticationValidator, UsernamePrefilterMXBean, Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(UsernamePrefilter.class);
+
+    private static final String CLUSTER_RESTREAMER = "cluster-restreamer";
+
+    private final IAuthenticationValidator validator;
+
+    private final IUsernameSource source;
+
+    private final double falsePositiveRate;
+
+    private final String name;
+
+    /**
+     * Current filter, null until built or if the source could not be read
+     */
+    private volatile BloomFilter filter;
+
+    /**
+     * Version of the usernames the last build attempt was made for
+     */
+    private volatile long builtVersion = Long.MIN_VALUE;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private ObjectName objectName;
+
+    private final LongAdder rejects = new LongAdder();
+
+    private final LongAdder passes = new LongAdder();
+
+    private final LongAdder passedDenied = new LongAdder();
+
+    private final LongAdder rebuilds = new LongAdder();
+
+    private volatile long lastRebuildDuration;
+
+    /**
+     * Creates a prefilter.
+     *
+     * @param validator
+     *            the validator to pass known usernames on to
+     * @param source
+     *            the source of the known usernames
+     * @param falsePositiveRate
+     *            the false positive rate of the filter
+     * @param name
+     *            name under which the prefilter is registered with JMX
+     */
+    public UsernamePrefilter(IAuthenticationValidator validator, IUsernameSource source, double falsePositiveRate, String name) {
+        this.validator = validator;
+        this.source = source;
+        this.falsePositiveRate = falsePositiveRate;
+        this.name = name;
+    }
+
+    /**
+     * Builds the filter and registers with JMX. The wrapped validator is
+     * expected to be initialized by its owner.
+     */
+    @Override
+    public void initialize() {
+        rebuild();
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName(
+                    String.format("com.red5pro.server.plugin.simpleauth:type=UsernamePrefilter,name=%s", ObjectName.quote(name)));
+            if (!mbs.isRegistered(on)) {
+                mbs.registerMBean(this, on);
+                objectName = on;
+            }
+        } catch (Exception e) {
+            logger.warn("Error registering username prefilter with JMX", e);
+        }
+    }
+
+    @Override
+    public boolean onConnectAuthenticate(String username, String password, Object[] rest) {
+        if (username != null && !username.isEmpty() && !CLUSTER_RESTREAMER.equals(username)) {
+            BloomFilter current = filter;
+            if (builtVersion != source.getUsernamesVersion()) {
+                scheduleRebuild();
+            } else if (current != null && !current.mightContain(username)) {
+                rejects.increment();
+                logger.debug("Rejecting unknown username {}", username);
+                return false;
+            }
+        }
+        passes.increment();
+        boolean authenticated = validator.onConnectAuthenticate(username, password, rest);
+        if (!authenticated) {
+            passedDenied.increment();
+        }
+        return authenticated;
+    }
+
+    private void scheduleRebuild() {
+        if (rebuilding.compareAndSet(false, true)) {
+            Thread builder = new Thread(() -> {
+                try {
+                    rebuild();
+                } finally {
+                    rebuilding.set(false);
+                }
+            }, "UsernamePrefilterBuilder");
+            builder.setDaemon(true);
+            builder.start();
+        }
+    }
+
+    /**
+     * Builds a new filter from the source and replaces the current one. If the
+     * source cannot be read, the current filter is dropped so that attempts are
+     * passed on unfiltered until the source changes again.
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+        long version = source.getUsernamesVersion();
+        try {
+            List<String> usernames = new ArrayList<>();
+            source.forEachUsername(usernames::add);
+            BloomFilter built = new BloomFilter(usernames.size(), falsePositiveRate);
+            usernames.forEach(built::put);
+            filter = built;
+            lastRebuildDuration = (System.nanoTime() - start) / 1000000L;
+            rebuilds.increment();
+            logger.info("Username prefilter {} built with {} usernames in {} ms", name, built.size(), lastRebuildDuration);
+        } catch (Exception e) {
+            filter = null;
+            logger.error("Error building username prefilter {}: {}", name, e.getMessage());
+        }
+        builtVersion = version;
+    }
+
+    /**
+     * Unregisters from JMX and closes the username source if it is closeable.
+     */
+    @Override
+    public void close() {
+        unregister();
+        if (source instanceof Closeable && source != validator) {
+            try {
+                ((Closeable) source).close();
+            } catch (IOException e) {
+                logger.warn("Error closing username source", e);
+            }
+        }
+    }
+
+    /**
+     * Unregisters from JMX, freeing the name for a prefilter replacing this one.
+     */
+    void unregister() {
+        if (objectName != null) {
+            try {
+                MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                if (mbs.isRegistered(objectName)) {
+                    mbs.unregisterMBean(objectName);
+                }
+            } catch (Exception e) {
+                logger.warn("Error unregistering username prefilter from JMX", e);
+            }
+            objectName = null;
+        }
+    }
+
+    public IAuthenticationValidator getValidator() {
+        return validator;
+    }
+
+    @Override
+    public int getUsernameCount() {
+        BloomFilter current = filter;
+        return (current != null) ? current.size() : 0;
+    }
+
+    @Override
+    public int getBitCount() {
+        BloomFilter current = filter;
+        return (current != null) ? current.getBitCount() : 0;
+    }
+
+    @Override
+    public double getTargetFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    @Override
+    public double getExpectedFalsePositiveRate() {
+        BloomFilter current = filter;
+        return (current != null) ? current.getFalsePositiveRate() : 1d;
+    }
+
+    @Override
+    public long getRejectCount() {
+        return rejects.sum();
+    }
+
+    @Override
+    public long getPassCount() {
+        return passes.sum();
+    }
+
+    @Override
+    public long getPassedDeniedCount() {
+        return passedDenied.sum();
+    }
+
+    @Override
+    public long getRebuildCount() {
+        return rebuilds.sum();
+    }
+
+    @Override
+    public long getLastRebuildDuration() {
+        return lastRebuildDuration;
+    }
+
+}
@@ -0,0 +1,98 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.impl;
+
+/**
+ * JMX management interface exposing the statistics of a UsernamePrefilter.
+ */
+public interface UsernamePrefilterMXBean {
+
+    /**
+     * Returns the number of usernames in the filter.
+     *
+     * @return username count
+     */
+    int getUsernameCount();
+
+    /**
+     * Returns the size of the filter in bits.
+     *
+     * @return bit count
+     */
+    int getBitCount();
+
+    /**
+     * Returns the configured false positive rate.
+     *
+     * @return target false positive rate
+     */
+    double getTargetFalsePositiveRate();
+
+    /**
+     * Returns the false positive rate estimated from the current filter contents.
+     *
+     * @return expected false positive rate
+     */
+    double getExpectedFalsePositiveRate();
+
+    /**
+     * Returns the number of attempts rejected because the username is unknown.
+     *
+     * @return reject count
+     */
+    long getRejectCount();
+
+    /**
+     * Returns the number of attempts passed on to the validator.
+     *
+     * @return pass count
+     */
+    long getPassCount();
+
+    /**
+     * Returns the number of attempts passed on to the validator and denied by
+     * it. This is an upper bound of the false positives, as it includes known
+     * users with a wrong password.
+     *
+     * @return passed and denied count
+     */
+    long getPassedDeniedCount();
+
+    /**
+     * Returns the number of times the filter was built.
+     *
+     * @return rebuild count
+     */
+    long getRebuildCount();
+
+    /**
+     * Returns the time in milliseconds the last build of the filter took.
+     *
+     * @return rebuild duration
+     */
+    long getLastRebuildDuration();
+
+}
@@ -1,18 +1,25 @@
 package com.red5pro.server.plugin.simpleauth.servlet;
 
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
@@ -27,10 +34,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.web.context.WebApplicationContext;
 
-import com.google.gson.JsonObject;
 import com.red5pro.server.plugin.simpleauth.AuthenticatorType;
 import com.red5pro.server.plugin.simpleauth.SimpleAuthPlugin;
 import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.RoundTripAuthValidator;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
 import com.red5pro.server.plugin.simpleauth.impl.HTTPAuthenticator;
 import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
 
@@ -45,37 +52,95 @@ import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
 	&lt;filter&gt;
 	    &lt;filter-name&gt;authServlet&lt;/filter-name&gt;
 	    &lt;filter-class&gt;com.red5pro.server.plugin.simpleauth.servlet.AuthServlet&lt;/filter-class&gt;
+	    &lt;async-supported&gt;true&lt;/async-supported&gt;
 	&lt;/filter&gt;
 	&lt;filter-mapping&gt;
 	    &lt;filter-name&gt;authServlet&lt;/filter-name&gt;
 	    &lt;url-pattern&gt;*.m4*&lt;/url-pattern&gt;
+	    &lt;dispatcher&gt;REQUEST&lt;/dispatcher&gt;
+	    &lt;dispatcher&gt;ASYNC&lt;/dispatcher&gt;
 	&lt;/filter-mapping&gt;
 	&lt;filter-mapping&gt;
 	    &lt;filter-name&gt;authServlet&lt;/filter-name&gt;
 	    &lt;url-pattern&gt;*.m3u8&lt;/url-pattern&gt;
+	    &lt;dispatcher&gt;REQUEST&lt;/dispatcher&gt;
+	    &lt;dispatcher&gt;ASYNC&lt;/dispatcher&gt;
 	&lt;/filter-mapping&gt;
 	&lt;filter-mapping&gt;
 	    &lt;filter-name&gt;authServlet&lt;/filter-name&gt;
 	    &lt;url-pattern&gt;*.ts&lt;/url-pattern&gt;
+	    &lt;dispatcher&gt;REQUEST&lt;/dispatcher&gt;
+	    &lt;dispatcher&gt;ASYNC&lt;/dispatcher&gt;
 	&lt;/filter-mapping&gt;
  * </pre>
  *
+ * When the request supports async processing, round-trip validation is
+ * performed without holding the container thread; the request is dispatched
+ * again once the remote server has answered.
+ *
+ * A successful authentication is remembered in the http session as a grant for
+ * the scope, stream name and role type, so that the playlist and segment
+ * requests which follow are admitted without validating them again until the
+ * grant expires. The lifetime of a grant is set with the
+ * <code>grantTtl</code> init parameter in milliseconds (default 30000, 0
+ * disables grants); a round-trip response carrying a <code>ttl</code>, in
+ * seconds, caps the lifetime of its grant, which never exceeds
+ * <code>grantTtl</code>.
+ *
+ * With the <code>stateless</code> init parameter set to true, the grant is
+ * instead issued as an HMAC signed playback token scoped to the stream, in a
+ * cookie and a <code>Playback-Token</code> response header. Requests carrying a
+ * valid token, in the cookie or a <code>playback</code> query parameter, are
+ * verified locally and no http session is created for them, nor for rejected
+ * requests. The key is set with the <code>tokenSecret</code> init parameter and
+ * must be the same on every server the player may reach; without it a random
+ * key is generated at startup.
+ *
  * @author Paul Gregoire
  */
 public class AuthServlet implements Filter {
 
     private static Logger log = LoggerFactory.getLogger(AuthServlet.class);
 
+    /**
+     * Request attribute set on a request which was authorized asynchronously,
+     * before it is dispatched again
+     */
+    private static final String ASYNC_AUTHORIZED = AuthServlet.class.getName() + ".authorized";
+
+    /**
+     * Name of the playback token cookie and query parameter
+     */
+    private static final String PLAYBACK_TOKEN = "playback";
+
     private volatile ApplicationContext appCtx;
 
     private SimpleAuthPlugin plugin;
 
+    /**
+     * Time in milliseconds a successful authentication is granted to the session
+     */
+    private long grantTtl = 30000L;
+
+    /**
+     * Playback tokens when running stateless, otherwise null
+     */
+    private PlaybackTokens playbackTokens;
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         Optional<IRed5Plugin> opt = Optional.ofNullable(PluginRegistry.getPlugin(SimpleAuthPlugin.NAME));
         if (opt.isPresent()) {
             plugin = (SimpleAuthPlugin) opt.get();
         }
+        String ttl = filterConfig.getInitParameter("grantTtl");
+        if (StringUtils.isNotBlank(ttl)) {
+            grantTtl = Long.parseLong(ttl.trim());
+        }
+        if (Boolean.parseBoolean(filterConfig.getInitParameter("stateless"))) {
+            playbackTokens = new PlaybackTokens(filterConfig.getInitParameter("tokenSecret"));
+            log.info("Stateless playback tokens enabled");
+        }
     }
 
     @Override
@@ -85,6 +150,12 @@ public class AuthServlet implements Filter {
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
         HttpServletResponse httpResponse = (HttpServletResponse) response;
+        // requests re-dispatched after asynchronous authorization
+        if (request.getDispatcherType() == DispatcherType.ASYNC && request.getAttribute(ASYNC_AUTHORIZED) != null) {
+            request.removeAttribute(ASYNC_AUTHORIZED);
+            chain.doFilter(request, response);
+            return;
+        }
         if (log.isDebugEnabled()) {
             Iterator<String> hdrNames = httpRequest.getHeaderNames().asIterator();
             while (hdrNames.hasNext()) {
@@ -92,29 +163,30 @@ public class AuthServlet implements Filter {
                 log.debug("Header - {} {}", hdrName, httpRequest.getHeader(hdrName));
             }
         }
-        // use the http session for storage of params etc, invalidate on error
-        HttpSession session = httpRequest.getSession();
         // XXX check for user/passwd and / or just a token
         String username = null, password = null, token = "", type = "subscriber";
         // if stream name doesnt come via params get it from the url minus any extension
         // like m3u8, ts, etc
         String streamName = null;
-        Iterator<String> paramNames = httpRequest.getParameterNames().asIterator();
-        while (paramNames.hasNext()) {
-            String paramName = paramNames.next();
+        // single pass over the parameters, taking the first value of each as
+        // getParameter would
+        Map<String, String[]> parameterMap = httpRequest.getParameterMap();
+        for (Entry<String, String[]> entry : parameterMap.entrySet()) {
+            String paramName = entry.getKey();
+            String value = firstValue(entry.getValue());
             if (IAuthenticationValidator.TOKEN.equals(paramName)) {
-                token = httpRequest.getParameter(paramName);
+                token = value;
             } else if (IAuthenticationValidator.USERNAME.equals(paramName)) {
-                username = httpRequest.getParameter(paramName);
+                username = value;
             } else if (IAuthenticationValidator.PASSWORD.equals(paramName)) {
-                password = httpRequest.getParameter(paramName);
+                password = value;
             } else if ("type".equals(paramName)) {
-                type = httpRequest.getParameter(paramName);
+                type = value;
             } else if ("streamName".equals(paramName)) {
-                streamName = httpRequest.getParameter(paramName);
+                streamName = value;
             } else {
                 if (log.isDebugEnabled()) {
-                    log.debug("Parameter - {} {}", paramName, httpRequest.getParameter(paramName));
+                    log.debug("Parameter - {} {}", paramName, value);
                 }
             }
         }
@@ -122,58 +194,48 @@ public class AuthServlet implements Filter {
         // get the request uri
         String requestedURI = httpRequest.getRequestURI();
         log.debug("Request URI: {}", requestedURI); // ex: /live/stream1.m3u8
-        // check the query string for parameters as well, this may be why vlc and ffplay
-        // arent working
-        if (StringUtils.isNotBlank(token) || (StringUtils.isNotBlank(username) && StringUtils.isNotBlank(password)
-                && !"undefined".equals(username) && !"undefined".equals(password))) {
-            Map<String, String[]> qsMap = httpRequest.getParameterMap();
-            log.debug("QS map: {}", qsMap);
-            for (Entry<String, String[]> entry : qsMap.entrySet()) {
-                String key = entry.getKey();
-                String[] val = entry.getValue();
-                if (IAuthenticationValidator.TOKEN.equals(key)) {
-                    token = val[0];
-                } else if (IAuthenticationValidator.USERNAME.equals(key)) {
-                    username = val[0];
-                } else if (IAuthenticationValidator.PASSWORD.equals(key)) {
-                    password = val[0];
-                } else if ("type".equals(key)) {
-                    type = val[0];
-                } else if ("streamName".equals(key)) {
-                    streamName = val[0];
+        // ensure we've got a stream name
+        if (streamName == null) {
+            streamName = streamNameOf(requestedURI);
+        }
+        log.debug("Stream name: {}", streamName);
+        // admit requests covered by a grant from an earlier authentication
+        if (playbackTokens != null) {
+            String scopeName = getScopeName(request);
+            if (scopeName != null && playbackTokens.verify(getPlaybackToken(httpRequest), scopeName, streamName, type)) {
+                log.debug("Request admitted by playback token for {}", streamName);
+                chain.doFilter(request, response);
+                return;
+            }
+        } else if (grantTtl > 0) {
+            HttpSession existing = httpRequest.getSession(false);
+            if (existing != null) {
+                try {
+                    String scopeName = getScopeName(request);
+                    if (scopeName != null && SessionGrants.isGranted(existing, scopeName, streamName, type)) {
+                        log.debug("Request admitted by session grant for {}", streamName);
+                        chain.doFilter(request, response);
+                        return;
+                    }
+                } catch (IllegalStateException e) {
+                    // session invalidated concurrently
                 }
             }
         }
+        // use the http session for storage of params etc, invalidate on error; when
+        // stateless it is only created for the HTTPAuthenticator
+        HttpSession session = (playbackTokens == null) ? httpRequest.getSession() : null;
         // process token and / or u:p combo, check for blank and/or "undefined"
         if (StringUtils.isNotBlank(token) || (StringUtils.isNotBlank(username) && StringUtils.isNotBlank(password)
                 && !"undefined".equals(username) && !"undefined".equals(password))) {
-            if (appCtx == null) {
-                // XXX should we be looking for apps? validating that they exist?
-                appCtx = (ApplicationContext) request.getServletContext()
-                        .getAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE);
-                // if theres no context then this is not running in a red5 app
-                if (appCtx == null) {
-                    session.invalidate();
-                    // return an error
-                    httpResponse.sendError(500, "No application context found");
-                    return;
-                }
-                // log.info("App context: {}", appCtx.getDisplayName());
-            }
-            // use one level higher than MultithreadedAppAdapter since we only need the
-            // scope
-            StatefulScopeWrappingAdapter app = (StatefulScopeWrappingAdapter) appCtx.getBean("web.handler");
-            // applications scope
-            IScope appScope = app.getScope();
-            log.debug("Application scope: {}", appScope);
-            String scopeName = appScope.getName();
-            // ensure we've got a stream name
-            if (streamName == null) {
-                String strippedURI = requestedURI.substring(requestedURI.lastIndexOf('/') + 1);
-                String[] parts = strippedURI.split("\\.|_");
-                streamName = parts[0];
+            String scopeName = getScopeName(request);
+            // if theres no context then this is not running in a red5 app
+            if (scopeName == null) {
+                invalidate(session);
+                // return an error
+                httpResponse.sendError(500, "No application context found");
+                return;
             }
-            log.debug("Stream name: {}", streamName);
             // ensure we've got a plugin reference
             if (plugin == null) {
                 Optional<IRed5Plugin> opt = Optional.ofNullable(PluginRegistry.getPlugin(SimpleAuthPlugin.NAME));
@@ -187,52 +249,288 @@ public class AuthServlet implements Filter {
                 if (validator instanceof RoundTripAuthValidator) {
                     log.debug("Using RoundTripAuthValidator");
                     // perform the validation via round-trip
-                    JsonObject result = ((RoundTripAuthValidator) validator).authenticateOverHttp(type, username, password, token,
-                            streamName);
-                    if (result != null && result.get("result").getAsBoolean()) {
-                        session.setAttribute("roletype", type);
-                        session.setAttribute("streamID", streamName);
-                        if (result.has("url")) {
-                            String url = result.get("url").getAsString();
-                            session.setAttribute("signedURL", url);
-                        }
-                        // continue down the chain
-                        chain.doFilter(request, response);
+                    CompletableFuture<AuthResult> future = ((RoundTripAuthValidator) validator).authenticateAsync(type, username, password,
+                            token, streamName);
+                    final String roleType = type, streamID = streamName;
+                    if (request.isAsyncSupported()) {
+                        // release the container thread while the remote server is validating
+                        AsyncContext asyncContext = request.startAsync();
+                        // the future completes on the http client's I/O thread, hand the response back to a
+                        // container thread so session and response handling never run on the reactor
+                        future.whenComplete((result, t) -> asyncContext.start(() -> {
+                            try {
+                                if (result != null && result.isResult()) {
+                                    grant(httpRequest, httpResponse, session, scopeName, roleType, streamID, result);
+                                    request.setAttribute(ASYNC_AUTHORIZED, Boolean.TRUE);
+                                    // continue down the chain on a container thread
+                                    asyncContext.dispatch();
+                                } else {
+                                    invalidate(session);
+                                    // return an error
+                                    httpResponse.sendError(401, "Unauthorized request via RoundTripAuth");
+                                    asyncContext.complete();
+                                }
+                            } catch (Exception e) {
+                                log.warn("Exception completing async authentication", e);
+                                asyncContext.complete();
+                            }
+                        }));
                     } else {
-                        session.invalidate();
-                        // return an error
-                        httpResponse.sendError(401, "Unauthorized request via RoundTripAuth");
+                        AuthResult result = future.join();
+                        if (result.isResult()) {
+                            grant(httpRequest, httpResponse, session, scopeName, roleType, streamID, result);
+                            // continue down the chain
+                            chain.doFilter(request, response);
+                        } else {
+                            invalidate(session);
+                            // return an error
+                            httpResponse.sendError(401, "Unauthorized request via RoundTripAuth");
+                        }
                     }
                 } else {
                     log.debug("Using HTTPAuthenticator");
-                    Map<String, String> paramsMap = new HashMap<>();
-                    httpRequest.getParameterNames().asIterator().forEachRemaining((name) -> {
-                        paramsMap.put(name, httpRequest.getParameter(name));
-                    });
+                    Map<String, String> paramsMap = new FirstValueMap(parameterMap);
                     log.debug("Parameters map: {}", paramsMap);
                     Object[] rest = new Object[1];
                     rest[0] = paramsMap;
-                    if (((HTTPAuthenticator) validator).authenticate(AuthenticatorType.HTTP, session, rest)) {
-                        session.setAttribute("roletype", type);
-                        session.setAttribute("streamID", streamName);
+                    // the authenticator needs a session, when stateless it lives for this request only
+                    HttpSession authSession = (session != null) ? session : httpRequest.getSession();
+                    boolean authenticated;
+                    try {
+                        authenticated = ((HTTPAuthenticator) validator).authenticate(AuthenticatorType.HTTP, authSession, rest);
+                    } finally {
+                        if (session == null) {
+                            authSession.invalidate();
+                        }
+                    }
+                    if (authenticated) {
+                        if (playbackTokens != null) {
+                            if (grantTtl > 0) {
+                                issuePlaybackToken(httpRequest, httpResponse, scopeName, streamName, type, grantTtl);
+                            }
+                        } else {
+                            session.setAttribute("roletype", type);
+                            session.setAttribute("streamID", streamName);
+                            if (grantTtl > 0) {
+                                SessionGrants.grant(session, scopeName, streamName, type, grantTtl);
+                            }
+                        }
                         // continue down the chain
                         chain.doFilter(request, response);
                     } else {
-                        session.invalidate();
+                        invalidate(session);
                         // return an error
                         httpResponse.sendError(401, "Unauthorized request via HTTPAuthenticator");
                     }
                 }
             } catch (Exception e) {
-                session.invalidate();
+                invalidate(session);
                 // return an error
                 httpResponse.sendError(500, "Authentication failed");
             }
         } else {
-            session.invalidate();
+            invalidate(session);
             // return an error
             httpResponse.sendError(412, "Precondition failed");
         }
     }
 
+    /**
+     * Returns the stream name for a request uri, which is the last path segment up
+     * to the first '.' or '_'; ex: /live/stream1_12.ts is stream1.
+     *
+     * @param uri
+     *            request uri
+     * @return stream name
+     */
+    static String streamNameOf(String uri) {
+        int start = uri.lastIndexOf('/') + 1;
+        int end = start;
+        int length = uri.length();
+        while (end < length) {
+            char ch = uri.charAt(end);
+            if (ch == '.' || ch == '_') {
+                break;
+            }
+            end++;
+        }
+        return uri.substring(start, end);
+    }
+
+    static String firstValue(String[] values) {
+        return (values == null || values.length == 0) ? null : values[0];
+    }
+
+    /**
+     * Read-only view of the request parameters holding the first value of each,
+     * which spares copying them for the authenticator.
+     */
+    static final class FirstValueMap extends AbstractMap<String, String> {
+
+        private final Map<String, String[]> parameters;
+
+        private Set<Entry<String, String>> entries;
+
+        FirstValueMap(Map<String, String[]> parameters) {
+            this.parameters = parameters;
+        }
+
+        @Override
+        public String get(Object key) {
+            return firstValue(parameters.get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return parameters.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return parameters.size();
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            if (entries == null) {
+                Map<String, String> copy = new HashMap<>();
+                parameters.forEach((name, values) -> copy.put(name, firstValue(values)));
+                entries = Collections.unmodifiableMap(copy).entrySet();
+            }
+            return entries;
+        }
+
+    }
+
+    /**
+     * Returns the name of the application scope the request is for.
+     *
+     * @param request
+     *            the request
+     * @return the scope name or null if not running in a red5 application
+     */
+    private String getScopeName(ServletRequest request) {
+        if (appCtx == null) {
+            // XXX should we be looking for apps? validating that they exist?
+            appCtx = (ApplicationContext) request.getServletContext()
+                    .getAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE);
+            if (appCtx == null) {
+                return null;
+            }
+            // log.info("App context: {}", appCtx.getDisplayName());
+        }
+        // use one level higher than MultithreadedAppAdapter since we only need the
+        // scope
+        StatefulScopeWrappingAdapter app = (StatefulScopeWrappingAdapter) appCtx.getBean("web.handler");
+        // applications scope
+        IScope appScope = app.getScope();
+        log.debug("Application scope: {}", appScope);
+        return appScope.getName();
+    }
+
+    /**
+     * Stores the details of a successful round-trip authentication in the
+     * session, and grants the session access to the stream. When stateless a
+     * playback token is issued instead.
+     *
+     * @param request
+     *            http request
+     * @param response
+     *            http response
+     * @param session
+     *            http session or null when stateless
+     * @param scopeName
+     *            scope name
+     * @param type
+     *            role type
+     * @param streamName
+     *            stream name
+     * @param result
+     *            remote server result
+     */
+    private void grant(HttpServletRequest request, HttpServletResponse response, HttpSession session, String scopeName, String type,
+            String streamName, AuthResult result) {
+        // a response ttl is in seconds
+        long ttl = (result.getTtl() >= 0) ? Math.min(result.getTtl() * 1000L, grantTtl) : grantTtl;
+        if (session == null) {
+            if (ttl > 0) {
+                issuePlaybackToken(request, response, scopeName, streamName, type, ttl);
+            }
+            return;
+        }
+        session.setAttribute("roletype", type);
+        session.setAttribute("streamID", streamName);
+        if (result.hasUrl()) {
+            session.setAttribute("signedURL", result.getUrl());
+        }
+        if (ttl > 0) {
+            SessionGrants.grant(session, scopeName, streamName, type, ttl);
+        }
+    }
+
+    /**
+     * Issues a playback token for the stream as a cookie, scoped to the path of
+     * the requested resource, and as a response header.
+     *
+     * @param request
+     *            http request
+     * @param response
+     *            http response
+     * @param scopeName
+     *            scope name
+     * @param streamName
+     *            stream name
+     * @param type
+     *            role type
+     * @param ttl
+     *            time in milliseconds the token is valid
+     */
+    private void issuePlaybackToken(HttpServletRequest request, HttpServletResponse response, String scopeName, String streamName,
+            String type, long ttl) {
+        String token = playbackTokens.issue(scopeName, streamName, type, ttl);
+        String uri = request.getRequestURI();
+        Cookie cookie = new Cookie(PLAYBACK_TOKEN, token);
+        cookie.setPath(uri.substring(0, uri.lastIndexOf('/') + 1));
+        cookie.setMaxAge((int) Math.max(1L, ttl / 1000L));
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        response.addCookie(cookie);
+        response.setHeader("Playback-Token", token);
+    }
+
+    /**
+     * Returns the playback token carried by the request, from the query string or
+     * a cookie.
+     *
+     * @param request
+     *            http request
+     * @return token or null if none
+     */
+    private static String getPlaybackToken(HttpServletRequest request) {
+        String token = request.getParameter(PLAYBACK_TOKEN);
+        if (token == null) {
+            Cookie[] cookies = request.getCookies();
+            if (cookies != null) {
+                for (Cookie cookie : cookies) {
+                    if (PLAYBACK_TOKEN.equals(cookie.getName())) {
+                        return cookie.getValue();
+                    }
+                }
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Invalidates the session if there is one.
+     *
+     * @param session
+     *            http session or null
+     */
+    private static void invalidate(HttpSession session) {
+        if (session != null) {
+            session.invalidate();
+        }
+    }
+
 }
@@ -1,14 +1,32 @@
 package com.red5pro.server.plugin.simpleauth.servlet;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -49,6 +67,7 @@ import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
     &lt;servlet&gt;
         &lt;servlet-name&gt;playlists&lt;/servlet-name&gt;
         &lt;servlet-class&gt;com.red5pro.server.plugin.simpleauth.servlet.M3U8ListingServlet&lt;/servlet-class&gt;
+        &lt;load-on-startup&gt;1&lt;/load-on-startup&gt;
     &lt;/servlet&gt;
     &lt;servlet-mapping&gt;
         &lt;servlet-name&gt;playlists&lt;/servlet-name&gt;
@@ -60,6 +79,13 @@ import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
  * {"playlists":{"name":"mystream","lastModified":20283083038,"length":8202,"url":"https://bucketname.s3.amazonaws.com/vod/hls/mystream.m3u8"}}
  * </pre>
  *
+ * With <code>useCloud=true</code> the configured cloud listers are queried
+ * concurrently; those which do not answer within the <code>cloudTimeout</code>
+ * init parameter (milliseconds, default 10000) are named in a
+ * <code>timedOut</code> array following the playlists, and those which fail in
+ * a <code>failed</code> array. The listers share a pool of
+ * <code>cloudThreads</code> threads (default 6).
+ *
  * @author Paul Gregoire
  */
 public class M3U8ListingServlet extends HttpServlet {
@@ -76,6 +102,14 @@ public class M3U8ListingServlet extends HttpServlet {
 
     private static final String JSON_ENTRY_TEMPLATE = "{\"name\":\"%s\",\"lastModified\":%d,\"length\":%d,\"url\":\"%s\"}";
 
+    private static final String JSON_TIMED_OUT_TEMPLATE = ",\"timedOut\":[\"%s\"]";
+
+    private static final String JSON_FAILED_TEMPLATE = ",\"failed\":[\"%s\"]";
+
+    private static final byte[] JSON_END_ARRAY = "]".getBytes();
+
+    private static final byte[] JSON_END_OBJECT = "}".getBytes();
+
     // state of service configured or not
     private static AtomicBoolean serviceConfigured = new AtomicBoolean(false);
 
@@ -100,6 +134,92 @@ public class M3U8ListingServlet extends HttpServlet {
     // whether or not to use authentication
     private boolean useAuth;
 
+    // time in milliseconds each cloud lister has to answer
+    private long cloudTimeout = 10000L;
+
+    // threads querying the cloud listers
+    private int cloudThreads = 6;
+
+    // queries the cloud listers concurrently, created in init and shut down in destroy
+    private transient ThreadPoolExecutor listingExecutor;
+
+    // whether or not to serve local listings from an index
+    private boolean indexRecordings = true;
+
+    // index of the local playlists, started in init when the application is available
+    private transient volatile RecordingIndex recordingIndex;
+
+    // time in milliseconds a listing waits for the initial scan of the index
+    private static final long INDEX_WAIT = 10000L;
+
+    @Override
+    public void init() throws ServletException {
+        String index = getInitParameter("recordingIndex");
+        if (index != null) {
+            indexRecordings = Boolean.parseBoolean(index);
+        }
+        String timeout = getInitParameter("cloudTimeout");
+        if (timeout != null) {
+            cloudTimeout = Long.parseLong(timeout.trim());
+        }
+        String threads = getInitParameter("cloudThreads");
+        if (threads != null) {
+            cloudThreads = Math.max(1, Integer.parseInt(threads.trim()));
+        }
+        // bounded so stalled listers cannot pile up threads, a full queue fails the lister
+        listingExecutor = new ThreadPoolExecutor(cloudThreads, cloudThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(cloudThreads * 16), r -> {
+                    Thread t = new Thread(r, "M3U8CloudLister");
+                    t.setDaemon(true);
+                    return t;
+                });
+        listingExecutor.allowCoreThreadTimeOut(true);
+        if (indexRecordings) {
+            startRecordingIndex();
+        }
+    }
+
+    /**
+     * Starts indexing the local playlists so the scan is under way before the
+     * first listing. If the application is not available yet the index is
+     * started by the first listing instead.
+     */
+    private void startRecordingIndex() {
+        ServletContext servletContext = getServletContext();
+        ApplicationContext appCtx = (servletContext != null)
+                ? (ApplicationContext) servletContext.getAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE)
+                : null;
+        if (appCtx == null) {
+            return;
+        }
+        try {
+            IScope appScope = ((StatefulScopeWrappingAdapter) appCtx.getBean("web.handler")).getScope();
+            IStreamFilenameGenerator filenameGenerator = (IStreamFilenameGenerator) ScopeUtils.getScopeService(appScope,
+                    IStreamFilenameGenerator.class, DefaultStreamFilenameGenerator.class);
+            boolean absolute = filenameGenerator.resolvesToAbsolutePath();
+            if (absolute && streamsBaseDirectory == null) {
+                Optional<IRed5Plugin> opt = Optional.ofNullable(PluginRegistry.getPlugin(CloudstoragePlugin.NAME));
+                if (!opt.isPresent()) {
+                    return;
+                }
+                streamsBaseDirectory = ((CloudstoragePlugin) opt.get()).getProperty("streams.dir", "/tmp");
+            }
+            getRecordingIndex(appScope.getContext(), absolute);
+        } catch (Exception e) {
+            log.debug("Recording index not started, the first listing starts it", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (recordingIndex != null) {
+            recordingIndex.close();
+        }
+        if (listingExecutor != null) {
+            listingExecutor.shutdownNow();
+        }
+    }
+
     public void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         // service lookup first and only once (if app doesnt start before the plugin
         if (serviceConfigured.compareAndSet(false, true)) {
@@ -269,29 +389,36 @@ public class M3U8ListingServlet extends HttpServlet {
                     // get all the resources under streams and its possible subdirs
                     try {
                         IContext context = appScope.getContext();
-                        if (log.isTraceEnabled()) {
-                            log.trace("Application context resources: {}", Arrays.toString(context.getResources("*")));
-                        }
-                        String searchPattern = String.format("streams%s/*.m3u8", ("/".equals(pathInfo) ? "/**" : pathInfo));
-                        log.debug("Search pattern: {}", searchPattern);
-                        Resource[] resources = context.getResources(searchPattern);
-                        log.debug("Local Resources {}", Arrays.toString(resources));
-                        for (int i = 0; i < resources.length; i++) {
-                            Resource res = resources[i];
-                            String uri = res.getURI().toString();
-                            String url = uri.substring(uri.lastIndexOf("streams/") + 8);
-                            out.write(String.format(JSON_ENTRY_TEMPLATE, res.getFilename(), res.lastModified(), res.contentLength(), url)
-                                    .getBytes());
-                            // comma or not to comma that is the question
-                            if (i < (resources.length - 1)) {
-                                out.write(COMMA);
+                        RecordingIndex index = getRecordingIndex(context, false);
+                        // waiting for the initial scan is no slower than searching the same tree
+                        if (index != null && index.awaitReady(INDEX_WAIT)) {
+                            writeCount = writeIndexed(index, pathInfo, out);
+                        } else {
+                            if (log.isTraceEnabled()) {
+                                log.trace("Application context resources: {}", Arrays.toString(context.getResources("*")));
                             }
-                            if (i % 10 == 0) {
-                                out.flush();
+                            String searchPattern = String.format("streams%s/*.m3u8", ("/".equals(pathInfo) ? "/**" : pathInfo));
+                            log.debug("Search pattern: {}", searchPattern);
+                            Resource[] resources = context.getResources(searchPattern);
+                            log.debug("Local Resources {}", Arrays.toString(resources));
+                            for (int i = 0; i < resources.length; i++) {
+                                Resource res = resources[i];
+                                String uri = res.getURI().toString();
+                                String url = uri.substring(uri.lastIndexOf("streams/") + 8);
+                                out.write(String
+                                        .format(JSON_ENTRY_TEMPLATE, res.getFilename(), res.lastModified(), res.contentLength(), url)
+                                        .getBytes());
+                                // comma or not to comma that is the question
+                                if (i < (resources.length - 1)) {
+                                    out.write(COMMA);
+                                }
+                                if (i % 10 == 0) {
+                                    out.flush();
+                                }
                             }
+                            // set the write count
+                            writeCount = resources.length;
                         }
-                        // set the write count
-                        writeCount = resources.length;
                     } catch (IOException e) {
                         log.warn("Exception building list of files", e);
                     }
@@ -299,113 +426,240 @@ public class M3U8ListingServlet extends HttpServlet {
                     log.debug("Using absolute path");
                     try {
                         IContext context = appScope.getContext();
-                        String searchPattern = String.format("file:%s%s/*.m3u8", streamsBaseDirectory,
-                                ("/".equals(pathInfo) ? "/**" : pathInfo));
-                        log.debug("Search pattern: {}", searchPattern);
-                        Resource[] resources = context.getResources(searchPattern);
-                        log.debug("Local Resources {}", Arrays.toString(resources));
-                        for (int i = 0; i < resources.length; i++) {
-                            Resource res = resources[i];
-                            String uri = res.getURI().toString();
-                            String url = uri.substring(uri.lastIndexOf("streams/"));
-                            out.write(String.format(JSON_ENTRY_TEMPLATE, res.getFilename(), res.lastModified(), res.contentLength(), url)
-                                    .getBytes());
-                            // comma or not to comma that is the question
-                            if (i < (resources.length - 1)) {
-                                out.write(COMMA);
-                            }
-                            if (i % 10 == 0) {
-                                out.flush();
+                        RecordingIndex index = getRecordingIndex(context, true);
+                        if (index != null && index.awaitReady(INDEX_WAIT)) {
+                            writeCount = writeIndexed(index, pathInfo, out);
+                        } else {
+                            String searchPattern = String.format("file:%s%s/*.m3u8", streamsBaseDirectory,
+                                    ("/".equals(pathInfo) ? "/**" : pathInfo));
+                            log.debug("Search pattern: {}", searchPattern);
+                            Resource[] resources = context.getResources(searchPattern);
+                            log.debug("Local Resources {}", Arrays.toString(resources));
+                            for (int i = 0; i < resources.length; i++) {
+                                Resource res = resources[i];
+                                String uri = res.getURI().toString();
+                                String url = uri.substring(uri.lastIndexOf("streams/"));
+                                out.write(String
+                                        .format(JSON_ENTRY_TEMPLATE, res.getFilename(), res.lastModified(), res.contentLength(), url)
+                                        .getBytes());
+                                // comma or not to comma that is the question
+                                if (i < (resources.length - 1)) {
+                                    out.write(COMMA);
+                                }
+                                if (i % 10 == 0) {
+                                    out.flush();
+                                }
                             }
+                            // set the write count
+                            writeCount = resources.length;
                         }
-                        // set the write count
-                        writeCount = resources.length;
                     } catch (IOException e) {
                         log.warn("Exception building list of files", e);
                     }
                 }
             } else {
-                // s3
-                if (serviceS3 != null) {
-                    // null pathInfo == / (root) in most cases, but for s3 bucket root expects ""
-                    String path = "/".equals(pathInfo) ? scopeName : scopeName + pathInfo;
-                    List<Resource> resources = serviceS3.handleResourceRequest(path, MediaFile.TYPE_PLAYLIST);
-                    log.debug("S3 Resources {}", resources);
-                    // if we wrote previous entries and we have s3 playlists as well, add a comma to
-                    // separate the sections
-                    if (writeCount > 0 && resources.size() > 0) {
-                        out.write(COMMA);
+                // null pathInfo == / (root) in most cases, but for cloud bucket root expects ""
+                String path = "/".equals(pathInfo) ? scopeName : scopeName + pathInfo;
+                List<String> timedOut = new ArrayList<>();
+                List<String> failed = new ArrayList<>();
+                writeCloudListings(getCloudListers(), path, out, timedOut, failed);
+                if (!timedOut.isEmpty() || !failed.isEmpty()) {
+                    // close the playlists array and report the providers which did not answer
+                    out.write(JSON_END_ARRAY);
+                    if (!timedOut.isEmpty()) {
+                        out.write(String.format(JSON_TIMED_OUT_TEMPLATE, String.join("\",\"", timedOut)).getBytes());
                     }
-                    int length = resources.size();
-                    for (int i = 0; i < length; i++) {
-                        Resource res = resources.get(i);
-                        out.write(
-                                String.format(JSON_ENTRY_TEMPLATE, res.getFilename(), res.lastModified(), res.contentLength(), res.getURL())
-                                        .getBytes());
-                        // comma or not to comma that is the question
-                        if (i < (length - 1)) {
-                            out.write(COMMA);
-                        }
-                        if (i % 10 == 0) {
-                            out.flush();
+                    if (!failed.isEmpty()) {
+                        out.write(String.format(JSON_FAILED_TEMPLATE, String.join("\",\"", failed)).getBytes());
+                    }
+                    out.write(JSON_END_OBJECT);
+                    return;
+                }
+            }
+            out.write(JSON_END);
+        }
+    }
+
+    /**
+     * Returns the index of the local playlists, creating it on first use.
+     *
+     * @param context
+     *            application context
+     * @param absolute
+     *            whether recordings are under the absolute streams base directory
+     * @return index or null if disabled, the streams directory does not exist or
+     *         the index could not be kept
+     */
+    private RecordingIndex getRecordingIndex(IContext context, boolean absolute) {
+        if (!indexRecordings) {
+            return null;
+        }
+        RecordingIndex index = recordingIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = recordingIndex;
+                if (index == null) {
+                    try {
+                        Path root = absolute ? Paths.get(streamsBaseDirectory) : context.getResource("streams").getFile().toPath();
+                        if (Files.isDirectory(root)) {
+                            index = new RecordingIndex(root, JSON_ENTRY_TEMPLATE, absolute, "RecordingIndex@" + root);
+                            recordingIndex = index;
                         }
+                    } catch (Exception e) {
+                        log.debug("Recordings will not be indexed", e);
                     }
                 }
-                // gs
-                if (serviceGStorage != null) {
-                    // gstorage allows wildcards
-                    // https://cloud.google.com/storage/docs/gsutil/addlhelp/WildcardNames
-                    String path = "/".equals(pathInfo) ? scopeName : scopeName + pathInfo;
-                    List<Resource> resources = serviceGStorage.handleResourceRequest(path, MediaFile.TYPE_PLAYLIST);
-                    log.debug("GS Resources {}", resources);
-                    // if we wrote previous entries and we have gs playlists as well, add a comma to
-                    // separate the sections
-                    if (writeCount > 0 && resources.size() > 0) {
+            }
+        }
+        // a failed index stays in place so it is not rebuilt, the glob serves instead
+        return (index == null || index.isClosed()) ? null : index;
+    }
+
+    /**
+     * Writes the indexed playlists matching the path info.
+     *
+     * @param index
+     *            playlist index
+     * @param pathInfo
+     *            path info of the request
+     * @param out
+     *            output stream
+     * @return number of entries written
+     * @throws IOException
+     *             if writing fails
+     */
+    private static int writeIndexed(RecordingIndex index, String pathInfo, ServletOutputStream out) throws IOException {
+        int[] written = new int[1];
+        try {
+            index.forEach(pathInfo, entry -> {
+                try {
+                    // comma or not to comma that is the question
+                    if (written[0] > 0) {
                         out.write(COMMA);
                     }
-                    int length = resources.size();
-                    for (int i = 0; i < length; i++) {
-                        Resource res = resources.get(i);
-                        out.write(
-                                String.format(JSON_ENTRY_TEMPLATE, res.getFilename(), res.lastModified(), res.contentLength(), res.getURL())
-                                        .getBytes());
-                        // comma or not to comma that is the question
-                        if (i < (length - 1)) {
-                            out.write(COMMA);
-                        }
-                        if (i % 10 == 0) {
-                            out.flush();
-                        }
+                    out.write(entry);
+                    if (++written[0] % 10 == 0) {
+                        out.flush();
                     }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-                // do
-                if (serviceDOStorage != null) {
-                    String path = "/".equals(pathInfo) ? scopeName : scopeName + pathInfo;
-                    List<Resource> resources = serviceDOStorage.handleResourceRequest(path, MediaFile.TYPE_PLAYLIST);
-                    log.debug("GS Resources {}", resources);
-                    // if we wrote previous entries and we have gs playlists as well, add a comma to
-                    // separate the sections
-                    if (writeCount > 0 && resources.size() > 0) {
-                        out.write(COMMA);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return written[0];
+    }
+
+    /**
+     * Returns the configured cloud listers by name.
+     *
+     * @return listers
+     */
+    private static Map<String, IPluginService> getCloudListers() {
+        Map<String, IPluginService> listers = new LinkedHashMap<>();
+        if (serviceS3 != null) {
+            listers.put("S3BucketLister", serviceS3);
+        }
+        // gstorage allows wildcards
+        // https://cloud.google.com/storage/docs/gsutil/addlhelp/WildcardNames
+        if (serviceGStorage != null) {
+            listers.put("GStorageBucketLister", serviceGStorage);
+        }
+        if (serviceDOStorage != null) {
+            listers.put("DOBucketLister", serviceDOStorage);
+        }
+        return listers;
+    }
+
+    /**
+     * Queries the cloud listers concurrently and writes the playlists of each as
+     * soon as it answers. Listers which have not answered within
+     * <code>cloudTimeout</code> are cancelled.
+     *
+     * @param listers
+     *            cloud listers by name
+     * @param path
+     *            bucket path to list
+     * @param out
+     *            output stream
+     * @param timedOut
+     *            receives the names of the listers which timed out
+     * @param failed
+     *            receives the names of the listers which threw or could not be
+     *            queued
+     * @throws IOException
+     *             if writing fails
+     */
+    void writeCloudListings(Map<String, IPluginService> listers, String path, ServletOutputStream out, List<String> timedOut,
+            List<String> failed) throws IOException {
+        CompletionService<Entry<String, List<Resource>>> completion = new ExecutorCompletionService<>(listingExecutor);
+        Map<String, Future<Entry<String, List<Resource>>>> pending = new LinkedHashMap<>();
+        listers.forEach((name, lister) -> {
+            try {
+                pending.put(name, completion
+                        .submit(() -> new SimpleImmutableEntry<>(name, lister.handleResourceRequest(path, MediaFile.TYPE_PLAYLIST))));
+            } catch (RejectedExecutionException e) {
+                log.warn("Cloud lister {} not queued, {} listings pending", name, listingExecutor.getQueue().size());
+                failed.add(name);
+            }
+        });
+        // the listers start together so they share a deadline
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cloudTimeout);
+        int writeCount = 0;
+        try {
+            while (!pending.isEmpty()) {
+                Future<Entry<String, List<Resource>>> future = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (future == null) {
+                    break;
+                }
+                String name = removePending(pending, future);
+                try {
+                    Entry<String, List<Resource>> listing = future.get();
+                    List<Resource> resources = listing.getValue();
+                    log.debug("{} resources {}", listing.getKey(), resources);
+                    if (resources == null) {
+                        continue;
                     }
-                    int length = resources.size();
-                    for (int i = 0; i < length; i++) {
-                        Resource res = resources.get(i);
-                        out.write(
-                                String.format(JSON_ENTRY_TEMPLATE, res.getFilename(), res.lastModified(), res.contentLength(), res.getURL())
-                                        .getBytes());
+                    for (Resource res : resources) {
                         // comma or not to comma that is the question
-                        if (i < (length - 1)) {
+                        if (writeCount > 0) {
                             out.write(COMMA);
                         }
-                        if (i % 10 == 0) {
+                        out.write(
+                                String.format(JSON_ENTRY_TEMPLATE, res.getFilename(), res.lastModified(), res.contentLength(), res.getURL())
+                                        .getBytes());
+                        if (++writeCount % 10 == 0) {
                             out.flush();
                         }
                     }
+                    // hand the client what we have while the others are listing
+                    out.flush();
+                } catch (ExecutionException e) {
+                    log.warn("Exception listing cloud playlists from {}", name, e.getCause());
+                    failed.add(name);
                 }
             }
-            out.write(JSON_END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending.values().forEach(future -> future.cancel(true));
+        }
+        if (!pending.isEmpty()) {
+            log.warn("Cloud listers timed out: {}", pending.keySet());
+        }
+        timedOut.addAll(pending.keySet());
+    }
+
+    private static <T> String removePending(Map<String, T> pending, T future) {
+        for (Iterator<Entry<String, T>> it = pending.entrySet().iterator(); it.hasNext();) {
+            Entry<String, T> entry = it.next();
+            if (entry.getValue() == future) {
+                it.remove();
+                return entry.getKey();
+            }
         }
+        return null;
     }
 
 }
@@ -0,0 +1,148 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.servlet;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues and verifies stateless playback tokens. A token carries its expiry and
+ * an HMAC-SHA256 over the scope, stream name, role type and expiry, so it is
+ * verified with the key alone and no server side state. Servers sharing a
+ * stream must share the key for tokens to be honored across them.
+ */
+final class PlaybackTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    /**
+     * Mac instances are not thread safe and costly to look up, keep one per
+     * thread
+     */
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    /**
+     * Creates the tokens with the given secret, or with a random key when the
+     * secret is null or empty.
+     *
+     * @param secret
+     *            shared secret
+     */
+    PlaybackTokens(String secret) {
+        byte[] keyBytes;
+        if (secret == null || secret.isEmpty()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        key = new SecretKeySpec(keyBytes, ALGORITHM);
+        // fail early if the algorithm is not available
+        newMac();
+    }
+
+    /**
+     * Issues a token for the stream.
+     *
+     * @param scopeName
+     *            scope name
+     * @param streamName
+     *            stream name
+     * @param type
+     *            role type
+     * @param ttl
+     *            time in milliseconds the token is valid
+     * @return token
+     */
+    String issue(String scopeName, String streamName, String type, long ttl) {
+        String expires = Long.toString(System.currentTimeMillis() + ttl, 36);
+        return expires + '.' + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(scopeName, streamName, type, expires));
+    }
+
+    /**
+     * Returns whether the token is unexpired and was issued for the stream.
+     *
+     * @param token
+     *            token
+     * @param scopeName
+     *            scope name
+     * @param streamName
+     *            stream name
+     * @param type
+     *            role type
+     * @return true if valid
+     */
+    boolean verify(String token, String scopeName, String streamName, String type) {
+        if (token == null) {
+            return false;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        String expires = token.substring(0, dot);
+        try {
+            if (Long.parseLong(expires, 36) <= System.currentTimeMillis()) {
+                return false;
+            }
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            return MessageDigest.isEqual(signature, sign(scopeName, streamName, type, expires));
+        } catch (IllegalArgumentException e) {
+            // malformed expiry or signature
+            return false;
+        }
+    }
+
+    private byte[] sign(String scopeName, String streamName, String type, String expires) {
+        Mac mac = macs.get();
+        mac.update(scopeName.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        mac.update(streamName.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        mac.update(type.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return mac.doFinal(expires.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Playback token key could not be initialized", e);
+        }
+    }
+
+}
@@ -0,0 +1,336 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.servlet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.red5.logging.Red5LoggerFactory;
+import org.slf4j.Logger;
+
+/**
+ * In-memory index of the m3u8 playlists under a streams directory. The tree is
+ * scanned once on a daemon thread and then kept current from file system
+ * events, so listings are served without touching the disk. Each entry holds
+ * its rendered JSON. A directory which cannot be watched, such as when the
+ * inotify watch limit is reached, closes the index since it could no longer
+ * be kept complete.
+ */
+final class RecordingIndex implements Closeable {
+
+    private static Logger log = Red5LoggerFactory.getLogger(RecordingIndex.class, "red5pro");
+
+    private static final String EXTENSION = ".m3u8";
+
+    private final Path root;
+
+    private final String entryTemplate;
+
+    private final boolean urlIncludesStreams;
+
+    private final WatchService watchService;
+
+    /**
+     * Watched directories by key
+     */
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+
+    /**
+     * Rendered entries by path relative to the root, using '/' as separator
+     */
+    private final ConcurrentSkipListMap<String, byte[]> entries = new ConcurrentSkipListMap<>();
+
+    private volatile boolean ready;
+
+    private volatile boolean closed;
+
+    /**
+     * Released once the initial scan has completed or failed
+     */
+    private final CountDownLatch scanned = new CountDownLatch(1);
+
+    /**
+     * Starts indexing the playlists under a directory.
+     *
+     * @param root
+     *            streams directory
+     * @param entryTemplate
+     *            format of an entry taking the name, last modified, length and url
+     * @param urlIncludesStreams
+     *            whether the url of an entry starts at or after "streams/" in its
+     *            path
+     * @param name
+     *            name of the indexing thread
+     * @throws IOException
+     *             if the watch service cannot be created
+     */
+    RecordingIndex(Path root, String entryTemplate, boolean urlIncludesStreams, String name) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.entryTemplate = entryTemplate;
+        this.urlIncludesStreams = urlIncludesStreams;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Thread indexer = new Thread(this::run, name);
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    /**
+     * Returns whether the initial scan has completed and listings can be served
+     * from the index.
+     *
+     * @return true if ready
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Waits for the initial scan to complete, which walks the same tree a
+     * resource search would.
+     *
+     * @param timeout
+     *            time in milliseconds to wait
+     * @return true if ready
+     */
+    boolean awaitReady(long timeout) {
+        try {
+            scanned.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return ready;
+    }
+
+    /**
+     * Returns whether the index has stopped, either closed or failed, and will
+     * not become ready again.
+     *
+     * @return true if closed
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Passes the rendered entries matching the path info to the consumer, in path
+     * order. A path info of "/" matches every playlist, otherwise only those
+     * directly within the directory it names.
+     *
+     * @param pathInfo
+     *            path info of the request
+     * @param consumer
+     *            receives the rendered entries
+     * @return number of entries
+     */
+    int forEach(String pathInfo, Consumer<byte[]> consumer) {
+        String prefix = trim(pathInfo);
+        NavigableMap<String, byte[]> matches = prefix.isEmpty() ? entries : entries.subMap(prefix + '/', true, prefix + '0', false);
+        int count = 0;
+        for (Map.Entry<String, byte[]> entry : matches.entrySet()) {
+            if (prefix.isEmpty() || entry.getKey().indexOf('/', prefix.length() + 1) < 0) {
+                consumer.accept(entry.getValue());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of playlists indexed.
+     *
+     * @return playlist count
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private void run() {
+        try {
+            scan(root);
+            ready = true;
+            scanned.countDown();
+            log.debug("Indexed {} playlists under {}", entries.size(), root);
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = directories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        log.debug("Events lost, rescanning {}", root);
+                        ready = false;
+                        entries.clear();
+                        scan(root);
+                        ready = true;
+                    } else if (directory != null) {
+                        handle(event.kind(), directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    directories.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        } catch (Exception e) {
+            log.warn("Exception indexing playlists under {}, listings will not be indexed", root, e);
+            close();
+        }
+        log.debug("Stopped indexing {}", root);
+    }
+
+    private void handle(WatchEvent.Kind<?> kind, Path path) throws IOException {
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            String key = relative(path);
+            entries.remove(key);
+            // the path may have been a directory
+            entries.subMap(key + '/', key + '0').clear();
+        } else if (Files.isDirectory(path)) {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                scan(path);
+            }
+        } else if (isPlaylist(path)) {
+            update(path);
+        }
+    }
+
+    /**
+     * Registers the directories of a tree and indexes the playlists within.
+     * Directories are registered before they are read so that no playlist created
+     * meanwhile is missed.
+     *
+     * @throws IOException
+     *             if a directory cannot be registered with the watch service
+     */
+    private void scan(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                try {
+                    directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                } catch (NoSuchFileException e) {
+                    // removed while walking, its delete event follows
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && isPlaylist(file)) {
+                    put(file, attrs.lastModifiedTime().toMillis(), attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.debug("Unable to index {}", file, e);
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+    }
+
+    private void update(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            put(file, attrs.lastModifiedTime().toMillis(), attrs.size());
+        } catch (IOException e) {
+            // removed before it could be read, its delete event follows
+            entries.remove(relative(file));
+        }
+    }
+
+    private void put(Path file, long lastModified, long length) {
+        String uri = file.toUri().toString();
+        int streams = uri.lastIndexOf("streams/");
+        String url;
+        if (streams < 0) {
+            url = relative(file);
+        } else {
+            url = urlIncludesStreams ? uri.substring(streams) : uri.substring(streams + 8);
+        }
+        String json = String.format(entryTemplate, file.getFileName(), lastModified, length, url);
+        entries.put(relative(file), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String relative(Path path) {
+        String relative = root.relativize(path).toString();
+        return (path.getFileSystem().getSeparator().equals("/")) ? relative : relative.replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    private static boolean isPlaylist(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    private static String trim(String pathInfo) {
+        int start = 0, end = pathInfo.length();
+        while (start < end && pathInfo.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && pathInfo.charAt(end - 1) == '/') {
+            end--;
+        }
+        return pathInfo.substring(start, end);
+    }
+
+    /**
+     * Stops indexing.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ready = false;
+        scanned.countDown();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.debug("Exception closing watch service", e);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.servlet;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpSession;
+
+/**
+ * Authorizations granted to an http session, keyed by scope, stream name and
+ * role type, each with an expiry. Lets the AuthServlet admit the playlist and
+ * segment requests following a successful authentication without validating
+ * them again.
+ */
+final class SessionGrants implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Session attribute holding the grants
+     */
+    static final String ATTRIBUTE = SessionGrants.class.getName();
+
+    /**
+     * Maximum number of grants per session; expired grants are purged when
+     * reached
+     */
+    private static final int MAX_GRANTS = 64;
+
+    private final ConcurrentHashMap<String, Long> grants = new ConcurrentHashMap<>();
+
+    /**
+     * Returns whether the session holds an unexpired grant.
+     *
+     * @param session
+     *            http session
+     * @param scopeName
+     *            scope name
+     * @param streamName
+     *            stream name
+     * @param type
+     *            role type
+     * @return true if granted
+     */
+    static boolean isGranted(HttpSession session, String scopeName, String streamName, String type) {
+        Object attribute = session.getAttribute(ATTRIBUTE);
+        if (attribute instanceof SessionGrants) {
+            Long expires = ((SessionGrants) attribute).grants.get(key(scopeName, streamName, type));
+            return expires != null && expires > System.currentTimeMillis();
+        }
+        return false;
+    }
+
+    /**
+     * Records a grant in the session.
+     *
+     * @param session
+     *            http session
+     * @param scopeName
+     *            scope name
+     * @param streamName
+     *            stream name
+     * @param type
+     *            role type
+     * @param ttl
+     *            time in milliseconds the grant is valid
+     */
+    static void grant(HttpSession session, String scopeName, String streamName, String type, long ttl) {
+        SessionGrants sessionGrants;
+        Object attribute = session.getAttribute(ATTRIBUTE);
+        if (attribute instanceof SessionGrants) {
+            sessionGrants = (SessionGrants) attribute;
+        } else {
+            sessionGrants = new SessionGrants();
+            session.setAttribute(ATTRIBUTE, sessionGrants);
+        }
+        long now = System.currentTimeMillis();
+        if (sessionGrants.grants.size() >= MAX_GRANTS) {
+            sessionGrants.grants.values().removeIf(expires -> expires <= now);
+            if (sessionGrants.grants.size() >= MAX_GRANTS) {
+                sessionGrants.grants.clear();
+            }
+        }
+        sessionGrants.grants.put(key(scopeName, streamName, type), now + ttl);
+    }
+
+    private static String key(String scopeName, String streamName, String type) {
+        return scopeName + '/' + streamName + '/' + type;
+    }
+
+}
@@ -0,0 +1,170 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Case-insensitive matcher of RTMP agent (flashVer) strings against a semicolon
+ * separated allow-list, where an agent is allowed if it contains any of the
+ * listed strings, or if the list is <code>*</code>. The list is compiled once
+ * into an Aho-Corasick automaton, so an agent string is scanned once regardless
+ * of the number of entries, and decisions are cached per agent string. Both
+ * the entries and the agent strings are upper cased with the root locale, so
+ * matching does not depend on the server's default locale.
+ */
+public class AgentMatcher {
+
+    /**
+     * Maximum number of cached decisions; the cache is cleared when full
+     */
+    private static final int MAX_CACHED = 256;
+
+    private final boolean matchAll;
+
+    /**
+     * Goto function, per state a map of character to next state
+     */
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+
+    private final int[] failure;
+
+    private final boolean[] terminal;
+
+    private final ConcurrentHashMap<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles an allow-list.
+     *
+     * @param allowedAgents
+     *            semicolon separated agent strings, or *; null allows nothing
+     */
+    public AgentMatcher(String allowedAgents) {
+        boolean all = "*".equals(allowedAgents);
+        transitions.add(new HashMap<>());
+        List<Boolean> ends = new ArrayList<>();
+        ends.add(false);
+        if (!all && allowedAgents != null) {
+            for (String candidate : allowedAgents.split(";")) {
+                String pattern = candidate.trim().toUpperCase(Locale.ROOT);
+                if (pattern.isEmpty()) {
+                    // an empty entry is contained in every agent string
+                    all = true;
+                    break;
+                }
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    Character c = pattern.charAt(i);
+                    Integer next = transitions.get(state).get(c);
+                    if (next == null) {
+                        next = transitions.size();
+                        transitions.get(state).put(c, next);
+                        transitions.add(new HashMap<>());
+                        ends.add(false);
+                    }
+                    state = next;
+                }
+                ends.set(state, true);
+            }
+        }
+        matchAll = all;
+        failure = new int[transitions.size()];
+        terminal = new boolean[transitions.size()];
+        for (int i = 0; i < terminal.length; i++) {
+            terminal[i] = ends.get(i);
+        }
+        // breadth first failure links; a state is terminal if its failure state is
+        Queue<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                int child = edge.getValue();
+                int f = failure[state];
+                while (f != 0 && !transitions.get(f).containsKey(edge.getKey())) {
+                    f = failure[f];
+                }
+                Integer target = transitions.get(f).get(edge.getKey());
+                failure[child] = (target != null && target != child) ? target : 0;
+                terminal[child] |= terminal[failure[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Returns whether an agent string is allowed.
+     *
+     * @param agent
+     *            the agent string
+     * @return true if allowed
+     */
+    public boolean matches(String agent) {
+        if (matchAll) {
+            return true;
+        }
+        if (agent == null) {
+            return false;
+        }
+        Boolean cached = decisions.get(agent);
+        if (cached != null) {
+            return cached;
+        }
+        boolean allowed = scan(agent.toUpperCase(Locale.ROOT));
+        if (decisions.size() >= MAX_CACHED) {
+            decisions.clear();
+        }
+        decisions.put(agent, allowed);
+        return allowed;
+    }
+
+    /**
+     * Scans an upper cased agent string. The whole string is upper cased rather
+     * than each character, as some characters upper case to several (ß to SS).
+     */
+    private boolean scan(String agent) {
+        int state = 0;
+        for (int i = 0; i < agent.length(); i++) {
+            Character c = agent.charAt(i);
+            Integer next;
+            while ((next = transitions.get(state).get(c)) == null && state != 0) {
+                state = failure[state];
+            }
+            state = (next != null) ? next : 0;
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
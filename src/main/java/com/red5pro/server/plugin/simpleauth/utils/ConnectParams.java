@@ -0,0 +1,255 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.utils;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read view of a client's connect parameters, shared by the authenticators.
+ * Nothing is copied up front: a parameter is looked up, and its value decoded,
+ * only when asked for, and the result is kept for later lookups. Keys are
+ * normalized by dropping a leading '?'.
+ * <p>
+ * For RTMP style parameters the <code>queryString</code> parameter is also
+ * searched, in a single scan without splitting; parameters without a value are
+ * reported with an empty value. Connect parameters take precedence over query
+ * string parameters of the same name.
+ * </p>
+ * Iterating or modifying the view copies all parameters into a regular map
+ * first, so validators treating it as a plain map see every parameter.
+ */
+public final class ConnectParams extends AbstractMap<String, Object> {
+
+    private static final String QUERY_STRING = "queryString";
+
+    /**
+     * Marks a key looked up and not found
+     */
+    private static final Object ABSENT = new Object();
+
+    private final Map<String, Object> params;
+
+    private final String query;
+
+    private final boolean decode;
+
+    /**
+     * Looked up values by key
+     */
+    private final Map<String, Object> resolved = new HashMap<>(8);
+
+    /**
+     * All parameters, once iterated or modified
+     */
+    private Map<String, Object> all;
+
+    private ConnectParams(Map<String, Object> params, String query, boolean decode) {
+        this.params = params;
+        this.query = query;
+        this.decode = decode;
+    }
+
+    /**
+     * Returns a view of the connect parameters with URL decoded values.
+     *
+     * @param params
+     *            the connect parameters
+     * @return parameters view
+     */
+    public static ConnectParams decoded(Map<String, Object> params) {
+        return new ConnectParams(params, null, true);
+    }
+
+    /**
+     * Returns a view of the connect parameters and the parameters in their query
+     * string, with values as provided.
+     *
+     * @param params
+     *            the connect parameters
+     * @return parameters view
+     */
+    public static ConnectParams withQueryString(Map<String, Object> params) {
+        Object query = params.get(QUERY_STRING);
+        return new ConnectParams(params, (query != null) ? String.valueOf(query) : null, false);
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (all != null) {
+            return all.get(key);
+        }
+        if (!(key instanceof String)) {
+            return null;
+        }
+        Object value = resolved.get(key);
+        if (value == null) {
+            value = lookup((String) key);
+            resolved.put((String) key, value);
+        }
+        return (value != ABSENT) ? value : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (all != null) {
+            return all.containsKey(key);
+        }
+        return get(key) != null || (key instanceof String && resolved.get(key) != ABSENT);
+    }
+
+    /**
+     * Returns a parameter as a string.
+     *
+     * @param key
+     *            the parameter name
+     * @return the value or null if not present
+     */
+    public String getString(String key) {
+        Object value = get(key);
+        return (value != null) ? String.valueOf(value) : null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return materialize().entrySet();
+    }
+
+    private Object lookup(String key) {
+        Object value = params.get(key);
+        if (value == null && !params.containsKey(key)) {
+            value = params.get('?' + key);
+            if (value == null && !params.containsKey('?' + key)) {
+                String found = (query != null) ? find(query, key) : null;
+                return (found != null) ? found : ABSENT;
+            }
+        }
+        return convert(value);
+    }
+
+    private Object convert(Object value) {
+        return decode ? decode(String.valueOf(value)) : value;
+    }
+
+    private Map<String, Object> materialize() {
+        if (all == null) {
+            Map<String, Object> map = new HashMap<>();
+            if (query != null) {
+                forEachQueryParam(query, map);
+            }
+            params.forEach((key, value) -> map.put((key.indexOf('?') == 0) ? key.substring(1) : key, convert(value)));
+            all = map;
+        }
+        return all;
+    }
+
+    /**
+     * Finds the value of a parameter in a query string.
+     *
+     * @param query
+     *            the query string
+     * @param name
+     *            the parameter name
+     * @return the value, empty if the parameter has no value, or null if not
+     *         present
+     */
+    static String find(String query, String name) {
+        int length = query.length();
+        int start = (length > 0 && query.charAt(0) == '?') ? 1 : 0;
+        while (start < length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            int nameEnd = start + name.length();
+            // empty segments, as in "a=1&&b=2", hold no parameter
+            if (end > start && nameEnd <= end && query.regionMatches(start, name, 0, name.length())) {
+                if (nameEnd == end) {
+                    return "";
+                }
+                if (query.charAt(nameEnd) == '=') {
+                    return query.substring(nameEnd + 1, end);
+                }
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private static void forEachQueryParam(String query, Map<String, Object> map) {
+        int length = query.length();
+        int start = (length > 0 && query.charAt(0) == '?') ? 1 : 0;
+        while (start < length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                int eq = query.indexOf('=', start);
+                if (eq < 0 || eq > end) {
+                    map.put(query.substring(start, end), "");
+                } else {
+                    map.put(query.substring(start, eq), query.substring(eq + 1, end));
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * URL decodes a value, returning it unchanged if it has nothing to decode or
+     * cannot be decoded.
+     *
+     * @param value
+     *            the value
+     * @return decoded value
+     */
+    public static String decode(String value) {
+        if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (Exception e) {
+            return value;
+        }
+    }
+
+}
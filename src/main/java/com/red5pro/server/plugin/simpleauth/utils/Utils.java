@@ -25,10 +25,7 @@
 //
 package com.red5pro.server.plugin.simpleauth.utils;
 
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.red5.server.api.IConnection;
 
@@ -48,7 +45,7 @@ public class Utils {
      * @return true if connection is a restreamer otherwise false
      */
     public static boolean isRestreamer(IConnection connection) {
-        Map<String, Object> map = getParametersMap(connection.getConnectParams());
+        Map<String, Object> map = ConnectParams.withQueryString(connection.getConnectParams());
         String objectEncoding = String.valueOf(map.get("objectEncoding"));
         String capabilities = String.valueOf(map.get("capabilities"));
         String flashVer = String.valueOf(map.get("flashVer"));
@@ -58,37 +55,4 @@ public class Utils {
         return false;
     }
 
-    /**
-     * Prepares a cleaned up java HashMap from a provided raw HashMap
-     *
-     * @param content
-     *            The raw HashMap containing connection parameters
-     * @return processed HashMap of connection parameters
-     */
-    private static Map<String, Object> getParametersMap(Map<String, Object> content) {
-        Map<String, Object> map = new HashMap<>();
-        Iterator<Entry<String, Object>> it = content.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, Object> pair = it.next();
-            String key = pair.getKey();
-            Object value = pair.getValue();
-            if (key.equals("queryString")) {
-                Map<String, Object> qmap = new HashMap<>();
-                String[] parameters = String.valueOf(value).split("&");
-                for (int i = 0; i < parameters.length; i++) {
-                    String[] param = String.valueOf(parameters[i]).split("=");
-                    String name = param[0];
-                    if (name.indexOf("?") == 0) {
-                        name = name.replace("?", "");
-                    }
-                    String val = param[1];
-                    qmap.put(name, val);
-                }
-                map.putAll(qmap);
-            }
-            map.put(key, value);
-        }
-        return map;
-    }
-
 }
@@ -0,0 +1,217 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.red5.server.adapter.MultiThreadedApplicationAdapter;
+import org.red5.server.api.IContext;
+import org.red5.server.api.scope.IScope;
+
+import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
+
+/**
+ * Churns application scopes in and out of the plugin while other threads look
+ * up their validators.
+ */
+public class SimpleAuthPluginTest {
+
+    private static final int SCOPES = 16;
+
+    private static final class NamedValidator implements IAuthenticationValidator {
+
+        private final String name;
+
+        NamedValidator(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public boolean onConnectAuthenticate(String username, String password, Object[] rest) {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        }
+        return (type.isPrimitive() && type != void.class) ? 0 : null;
+    }
+
+    private static IScope scope(String name, MultiThreadedApplicationAdapter adapter) {
+        return (IScope) Proxy.newProxyInstance(SimpleAuthPluginTest.class.getClassLoader(), new Class<?>[] { IScope.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getName":
+                        return name;
+                    case "getHandler":
+                        return adapter;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return name;
+                    default:
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static IContext context(Configuration configuration) {
+        return (IContext) Proxy.newProxyInstance(SimpleAuthPluginTest.class.getClassLoader(), new Class<?>[] { IContext.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getBean":
+                        return configuration;
+                    case "hasBean":
+                        return Boolean.TRUE;
+                    default:
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static Configuration configuration(IAuthenticationValidator validator) {
+        Configuration configuration = new Configuration();
+        configuration.setActive(true);
+        configuration.setValidator(validator);
+        configuration.setRtmp(true);
+        configuration.setRtc(true);
+        configuration.setAllowedRtmpAgents("*");
+        return configuration;
+    }
+
+    @Test
+    public void testScopeChurnUnderLookups() throws Exception {
+        SimpleAuthPlugin plugin = new SimpleAuthPlugin();
+        plugin.setDefaultConfiguration(configuration(new NamedValidator("default")));
+        String[] names = new String[SCOPES];
+        Map<String, IAuthenticationValidator> validators = new HashMap<>();
+        Map<String, IScope> scopes = new HashMap<>();
+        Map<String, IContext> contexts = new HashMap<>();
+        for (int i = 0; i < SCOPES; i++) {
+            names[i] = "app" + i;
+            IAuthenticationValidator validator = new NamedValidator(names[i]);
+            validators.put(names[i], validator);
+            scopes.put(names[i], scope(names[i], new MultiThreadedApplicationAdapter()));
+            contexts.put(names[i], context(configuration(validator)));
+        }
+        int churners = 4;
+        int readers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(churners + readers);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(readers);
+        AtomicLong found = new AtomicLong();
+        List<Future<?>> readerFutures = new ArrayList<>();
+        List<Future<?>> churnerFutures = new ArrayList<>();
+        try {
+            for (int r = 0; r < readers; r++) {
+                readerFutures.add(executor.submit(() -> {
+                    started.countDown();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        String name = names[random.nextInt(SCOPES)];
+                        IAuthenticationValidator validator = plugin.getAuthValidator(name);
+                        // either not registered, or registered with its own validator
+                        assertTrue(name + " got " + validator, validator == null || validator == validators.get(name));
+                        if (validator != null) {
+                            found.incrementAndGet();
+                        }
+                        plugin.isAuthenticatorProviderEnabled(name);
+                    }
+                    return null;
+                }));
+            }
+            for (int c = 0; c < churners; c++) {
+                // two churners share each scope name, so creations and removals of one scope race
+                int offset = c / 2;
+                churnerFutures.add(executor.submit(() -> {
+                    started.await();
+                    for (int round = 0; round < 500; round++) {
+                        for (int i = offset; i < SCOPES; i += churners / 2) {
+                            plugin.configureCustomContext(scopes.get(names[i]), contexts.get(names[i]));
+                        }
+                        for (int i = offset; i < SCOPES; i += churners / 2) {
+                            plugin.enableAuthenticatorProvider(names[i], (round & 1) == 0);
+                            plugin.cleanUp(scopes.get(names[i]));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : churnerFutures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            for (Future<?> future : readerFutures) {
+                // rethrows the assertion errors of the readers
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        assertTrue("no lookup found a registered scope", found.get() > 0);
+        for (String name : names) {
+            assertNull(plugin.getAuthValidator(name));
+            assertNull(plugin.getAuthProvider(name));
+        }
+        assertTrue(plugin.getScopeAuthenticationProviders().isEmpty());
+        // a scope registered again is found with its validator
+        plugin.configureCustomContext(scopes.get(names[0]), contexts.get(names[0]));
+        assertSame(validators.get(names[0]), plugin.getAuthValidator(names[0]));
+    }
+
+}
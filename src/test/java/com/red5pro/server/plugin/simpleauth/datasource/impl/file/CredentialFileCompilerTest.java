@@ -0,0 +1,161 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a compiled file holds the same credentials as the text file
+ * loaded through {@link Properties}.
+ */
+public class CredentialFileCompilerTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("credentials");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private void assertSameAsProperties(byte[] text) throws IOException {
+        Path source = dir.resolve("credentials.txt");
+        Path compiled = dir.resolve("credentials.bin");
+        Files.write(source, text);
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(source)) {
+            properties.load(in);
+        }
+        assertEquals(properties.size(), CredentialFileCompiler.compile(source, compiled));
+        MappedCredentialStore store = MappedCredentialStore.open(compiled);
+        Set<String> usernames = new HashSet<>();
+        store.forEachUsername(usernames::add);
+        assertEquals(properties.stringPropertyNames(), usernames);
+        for (String username : properties.stringPropertyNames()) {
+            assertEquals(username, properties.getProperty(username), store.getPassword(username));
+        }
+    }
+
+    @Test
+    public void testEscapesAndSeparators() throws IOException {
+        String text = "# comment \\\n" + "! other comment\n" + "alice=secret\n" + "bob pw\\=x\n" + "  carol : pass word  \n"
+                + "dave\\ smith=a\\:b\\\\c\n" + "erin\\u00e9=\\u0041\\t\\n\\qz\n" + "frank\n" + "grace=multi\\\n" + "    line\\\n"
+                + "\tvalue\n" + "heidi\f\t= x\r\n" + "ivan=one\rjudy=two\n" + "alice=replaced\n" + "ken=\\\\\\\n" + "  tail";
+        assertSameAsProperties(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testReadsIsoLatin1() throws IOException {
+        // a UTF-8 encoded file is read byte per character, as Properties.load(InputStream) does
+        assertSameAsProperties("alice=päss\nbjörk=x\n".getBytes(StandardCharsets.UTF_8));
+        assertSameAsProperties("alice=p\u00e4ss\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testRandomLines() throws IOException {
+        String alphabet = "ab =:#!\\\t\f\n\ru0e9Z";
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0, length = random.nextInt(200); i < length; i++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+            try {
+                new Properties().load(new ByteArrayInputStream(bytes));
+            } catch (IllegalArgumentException e) {
+                // malformed \\uxxxx, rejected by both paths
+                continue;
+            }
+            assertSameAsProperties(bytes);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedUnicodeEscape() throws IOException {
+        Path source = dir.resolve("credentials.txt");
+        Files.write(source, "alice=\\u00zz\n".getBytes(StandardCharsets.ISO_8859_1));
+        CredentialFileCompiler.compile(source, dir.resolve("credentials.bin"));
+    }
+
+    @Test
+    public void testLookupOnFullTableTerminates() throws IOException {
+        Path source = dir.resolve("credentials.txt");
+        Path compiled = dir.resolve("credentials.bin");
+        Files.write(source, "a=1\nb=2\n".getBytes(StandardCharsets.ISO_8859_1));
+        CredentialFileCompiler.compile(source, compiled);
+        // fill every empty slot so the table has no terminator, as a corrupt file could
+        byte[] bytes = Files.readAllBytes(compiled);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int slots = buffer.getInt(8);
+        int used = 0;
+        for (int i = 0; i < slots; i++) {
+            int slot = MappedCredentialStore.HEADER_SIZE + i * MappedCredentialStore.SLOT_SIZE;
+            if (buffer.getInt(slot + 4) != 0) {
+                used = buffer.getInt(slot + 4);
+            }
+        }
+        for (int i = 0; i < slots; i++) {
+            int slot = MappedCredentialStore.HEADER_SIZE + i * MappedCredentialStore.SLOT_SIZE;
+            if (buffer.getInt(slot + 4) == 0) {
+                buffer.putInt(slot, 0);
+                buffer.putInt(slot + 4, used);
+            }
+        }
+        Files.write(compiled, bytes);
+        MappedCredentialStore store = MappedCredentialStore.open(compiled);
+        assertNull(store.getPassword("missing"));
+        assertEquals("1", store.getPassword("a"));
+    }
+
+}
@@ -0,0 +1,165 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.file;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Load time, lookup latency and heap footprint of a compiled credentials file
+ * against the same credentials loaded through {@link Properties}. The heap
+ * retained by each is printed once the trial is set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class CredentialStoreBenchmark {
+
+    @Param({ "1000000" })
+    public int entries;
+
+    private Path dir;
+
+    private Path text;
+
+    private Path compiled;
+
+    private Properties properties;
+
+    private MappedCredentialStore store;
+
+    private String[] usernames;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("credentials");
+        text = dir.resolve("credentials.txt");
+        compiled = dir.resolve("credentials.bin");
+        try (BufferedWriter writer = Files.newBufferedWriter(text, StandardCharsets.ISO_8859_1)) {
+            for (int i = 0; i < entries; i++) {
+                writer.write("user" + i + "=password-" + Integer.toHexString(i * 31) + "\n");
+            }
+        }
+        CredentialFileCompiler.compile(text, compiled);
+        long before = usedHeap();
+        properties = loadProperties();
+        long afterProperties = usedHeap();
+        store = MappedCredentialStore.open(compiled);
+        long afterStore = usedHeap();
+        System.out.printf("%nHeap retained for %d credentials: Properties %d MB, compiled %d KB%n", entries,
+                (afterProperties - before) >> 20, Math.max(0, afterStore - afterProperties) >> 10);
+        Random random = new Random(7);
+        usernames = new String[1024];
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = "user" + random.nextInt(entries);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(text);
+        Files.delete(compiled);
+        Files.delete(dir);
+    }
+
+    private Properties loadProperties() throws IOException {
+        Properties loaded = new Properties();
+        try (InputStream in = Files.newInputStream(text)) {
+            loaded.load(in);
+        }
+        return loaded;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private String nextUsername() {
+        return usernames[next++ & (usernames.length - 1)];
+    }
+
+    @Benchmark
+    public String lookupProperties() {
+        return properties.getProperty(nextUsername());
+    }
+
+    @Benchmark
+    public String lookupCompiled() {
+        return store.getPassword(nextUsername());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Properties loadText() throws IOException {
+        return loadProperties();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public MappedCredentialStore openCompiled() throws IOException {
+        return MappedCredentialStore.open(compiled);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CredentialStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
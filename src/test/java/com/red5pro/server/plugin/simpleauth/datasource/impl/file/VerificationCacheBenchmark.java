@@ -0,0 +1,111 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.file;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of checking a hashed password when the verification cache hits and when
+ * it misses, the way the file validator does, against a plain text comparison.
+ * The miss cache has a zero time to live, so every lookup misses and pays for
+ * the key derivation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VerificationCacheBenchmark {
+
+    private static final String USERNAME = "viewer-0042";
+
+    private static final String PASSWORD = "s3cr3t-passw0rd";
+
+    @Param({ "310000" })
+    public int iterations;
+
+    private String stored;
+
+    private VerificationCache hitCache;
+
+    private VerificationCache missCache;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        stored = PasswordHash.hash(PASSWORD, iterations);
+        hitCache = new VerificationCache(10000, TimeUnit.HOURS.toMillis(1));
+        missCache = new VerificationCache(10000, 0);
+        verify(hitCache);
+    }
+
+    private boolean verify(VerificationCache cache) {
+        String key = cache.key(USERNAME, PASSWORD, stored);
+        Boolean verified = cache.get(key);
+        if (verified != null) {
+            return verified;
+        }
+        boolean result = PasswordHash.verify(PASSWORD, stored);
+        cache.put(key, result);
+        return result;
+    }
+
+    @Benchmark
+    public boolean plaintext() {
+        return PASSWORD.equals(new String(PASSWORD.toCharArray()));
+    }
+
+    @Benchmark
+    public boolean cacheHit() {
+        return verify(hitCache);
+    }
+
+    @Benchmark
+    public boolean cacheMiss() {
+        return verify(missCache);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(VerificationCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,223 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Time to validate a burst of concurrent playbacks against a local mock server
+ * answering after a fixed latency, through the non-blocking round-trip client
+ * and through the blocking call with a thread per playback as the Red5 I/O
+ * threads did. The mock holds no thread while delaying, so the peak thread
+ * count reported by {@link PeakThreadsProfiler} is that of the validator and
+ * its callers. {@link #main} adds the profiler, from the JMH command line add
+ * <code>-prof</code> with its class name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoundTripAuthValidatorBenchmark {
+
+    private static final byte[] ALLOWED = "{\"result\":true}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({ "10000" })
+    public int playbacks;
+
+    @Param({ "20" })
+    public long latency;
+
+    @Param({ "200" })
+    public int connections;
+
+    private HttpServer server;
+
+    private ScheduledExecutorService responder;
+
+    private RoundTripAuthValidator validator;
+
+    private int iteration;
+
+    /**
+     * Reports the peak number of live threads during each iteration as a
+     * secondary result, the highest of the iterations for the run.
+     */
+    public static class PeakThreadsProfiler implements InternalProfiler {
+
+        @Override
+        public String getDescription() {
+            return "Peak live thread count";
+        }
+
+        @Override
+        public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+            ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        }
+
+        @Override
+        public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                IterationResult result) {
+            int peak = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+            return Collections.singletonList(new ScalarResult("peakThreads", peak, "threads", AggregationPolicy.MAX));
+        }
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        responder = Executors.newSingleThreadScheduledExecutor();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/validate", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            responder.schedule(() -> respond(exchange), latency, TimeUnit.MILLISECONDS);
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        validator = new RoundTripAuthValidator();
+        validator.setProtocol("http://");
+        validator.setHost("127.0.0.1");
+        validator.setPort(String.valueOf(server.getAddress().getPort()));
+        validator.setValidateCredentialsEndPoint("/validate");
+        validator.setMaxConnectionsPerRoute(connections);
+        validator.setMaxConnectionsTotal(connections);
+        validator.initialize();
+    }
+
+    private static void respond(HttpExchange exchange) {
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, ALLOWED.length);
+            out.write(ALLOWED);
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validator.appStop(null);
+        server.stop(0);
+        responder.shutdownNow();
+    }
+
+    @Benchmark
+    public int concurrentPlaybacks() {
+        // distinct credentials, so nothing is coalesced or cached
+        int base = iteration++ * playbacks;
+        @SuppressWarnings("unchecked")
+        CompletableFuture<AuthResult>[] futures = new CompletableFuture[playbacks];
+        for (int i = 0; i < playbacks; i++) {
+            futures[i] = validator.authenticateAsync("subscriber", "user" + (base + i), "pass", "", "stream1");
+        }
+        int allowed = 0;
+        for (CompletableFuture<AuthResult> future : futures) {
+            if (future.join().isResult()) {
+                allowed++;
+            }
+        }
+        return checkAllowed(allowed);
+    }
+
+    @Benchmark
+    public int blockingPlaybacks() throws Exception {
+        int base = iteration++ * playbacks;
+        // each playback holds its thread until the backend answers
+        ExecutorService callers = Executors.newCachedThreadPool();
+        try {
+            @SuppressWarnings("unchecked")
+            Future<Boolean>[] futures = new Future[playbacks];
+            for (int i = 0; i < playbacks; i++) {
+                String username = "user" + (base + i);
+                futures[i] = callers.submit(() -> validator.authenticateOverHttp("subscriber", username, "pass", "", "stream1")
+                        .get("result").getAsBoolean());
+            }
+            int allowed = 0;
+            for (Future<Boolean> future : futures) {
+                if (future.get()) {
+                    allowed++;
+                }
+            }
+                return checkAllowed(allowed);
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    private int checkAllowed(int allowed) {
+        if (allowed != playbacks) {
+            throw new IllegalStateException((playbacks - allowed) + " playbacks were denied");
+        }
+        return allowed;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RoundTripAuthValidatorBenchmark.class.getSimpleName())
+                .addProfiler(PeakThreadsProfiler.class).build()).run();
+    }
+
+}
@@ -0,0 +1,226 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthData;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
+
+/**
+ * Batching of validation requests against a stub sender: flushing on size and
+ * on window expiry, handing each result back to its caller, and failing every
+ * caller of a batch whose response does not match it.
+ */
+public class AuthBatcherTest {
+
+    private final List<List<AuthData>> batches = new CopyOnWriteArrayList<>();
+
+    private AuthBatcher batcher;
+
+    @After
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    private static AuthData data(String username) {
+        AuthData data = new AuthData();
+        data.setType("subscriber");
+        data.setUsername(username);
+        data.setPassword("pass");
+        data.setStreamID("stream1");
+        return data;
+    }
+
+    /**
+     * Result telling which request it answers, allowing usernames starting with
+     * "allowed".
+     */
+    private static AuthResult resultFor(AuthData data) {
+        return new AuthResult(data.getUsername().startsWith("allowed"), "rtmp://origin/" + data.getUsername(), -1L, null);
+    }
+
+    /**
+     * Sender recording each batch and answering every item in order.
+     */
+    private CompletableFuture<List<AuthResult>> answer(List<AuthData> batch) {
+        batches.add(batch);
+        List<AuthResult> results = new ArrayList<>();
+        batch.forEach(data -> results.add(resultFor(data)));
+        return CompletableFuture.completedFuture(results);
+    }
+
+    @Test
+    public void testFlushOnMaxSize() throws Exception {
+        // a window long enough that only the size can trigger the send
+        batcher = new AuthBatcher(3, 60000L, this::answer);
+        CompletableFuture<AuthResult> first = batcher.submit(data("allowed1"));
+        CompletableFuture<AuthResult> second = batcher.submit(data("denied2"));
+        assertTrue(batches.isEmpty());
+        assertFalse(first.isDone());
+        CompletableFuture<AuthResult> third = batcher.submit(data("allowed3"));
+        assertEquals(1, batches.size());
+        assertEquals(3, batches.get(0).size());
+        assertTrue(first.get(1, TimeUnit.SECONDS).isResult());
+        assertFalse(second.get(1, TimeUnit.SECONDS).isResult());
+        assertEquals("rtmp://origin/allowed3", third.get(1, TimeUnit.SECONDS).getUrl());
+        assertEquals(1L, batcher.getBatches());
+        assertEquals(3L, batcher.getItems());
+    }
+
+    @Test
+    public void testFlushOnWindow() throws Exception {
+        batcher = new AuthBatcher(100, 50L, this::answer);
+        long start = System.nanoTime();
+        CompletableFuture<AuthResult> first = batcher.submit(data("allowed1"));
+        CompletableFuture<AuthResult> second = batcher.submit(data("allowed2"));
+        assertEquals("rtmp://origin/allowed1", first.get(5, TimeUnit.SECONDS).getUrl());
+        assertEquals("rtmp://origin/allowed2", second.get(5, TimeUnit.SECONDS).getUrl());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50L);
+        assertEquals(1, batches.size());
+        // the next item starts a new window
+        CompletableFuture<AuthResult> third = batcher.submit(data("allowed3"));
+        assertEquals("rtmp://origin/allowed3", third.get(5, TimeUnit.SECONDS).getUrl());
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(1).size());
+    }
+
+    @Test
+    public void testResultsReachTheirCallers() throws Exception {
+        int callers = 16, perCaller = 50;
+        batcher = new AuthBatcher(7, 5L, batch -> {
+            batches.add(batch);
+            List<AuthResult> results = new ArrayList<>();
+            batch.forEach(data -> results.add(resultFor(data)));
+            // answer out of the caller's thread, as the http client does
+            return CompletableFuture.supplyAsync(() -> results);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < callers; c++) {
+                final int caller = c;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perCaller; i++) {
+                        String username = ((i & 1) == 0 ? "allowed" : "denied") + caller + "-" + i;
+                        AuthResult result = batcher.submit(data(username)).get(5, TimeUnit.SECONDS);
+                        assertEquals("rtmp://origin/" + username, result.getUrl());
+                        assertEquals((i & 1) == 0, result.isResult());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        int items = 0;
+        for (List<AuthData> batch : batches) {
+            assertTrue(batch.size() <= 7);
+            items += batch.size();
+        }
+        assertEquals(callers * perCaller, items);
+        assertEquals(items, batcher.getItems());
+    }
+
+    @Test
+    public void testResultCountMismatchFailsEveryCaller() throws Exception {
+        batcher = new AuthBatcher(3, 60000L, batch -> {
+            batches.add(batch);
+            // one result short
+            return CompletableFuture.completedFuture(Collections.nCopies(batch.size() - 1, AuthResult.allowed()));
+        });
+        List<CompletableFuture<AuthResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(batcher.submit(data("allowed" + i)));
+        }
+        for (CompletableFuture<AuthResult> future : futures) {
+            try {
+                future.get(1, TimeUnit.SECONDS);
+                fail("Expected the batch to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    @Test
+    public void testSenderFailureFailsEveryCaller() throws Exception {
+        IOException unavailable = new IOException("unavailable");
+        batcher = new AuthBatcher(2, 60000L, batch -> {
+            CompletableFuture<List<AuthResult>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(unavailable);
+            return failed;
+        });
+        CompletableFuture<AuthResult> first = batcher.submit(data("allowed1"));
+        CompletableFuture<AuthResult> second = batcher.submit(data("allowed2"));
+        for (CompletableFuture<AuthResult> future : List.of(first, second)) {
+            try {
+                future.get(1, TimeUnit.SECONDS);
+                fail("Expected the batch to fail");
+            } catch (ExecutionException e) {
+                assertSame(unavailable, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testCloseSendsPending() throws Exception {
+        batcher = new AuthBatcher(10, 60000L, this::answer);
+        CompletableFuture<AuthResult> pending = batcher.submit(data("allowed1"));
+        batcher.close();
+        assertTrue(pending.get(1, TimeUnit.SECONDS).isResult());
+        assertEquals(1, batches.size());
+        // once closed, items are sent right away
+        CompletableFuture<AuthResult> late = batcher.submit(data("allowed2"));
+        assertTrue(late.get(1, TimeUnit.SECONDS).isResult());
+        batcher = null;
+    }
+
+}
@@ -0,0 +1,192 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthData;
+
+public class InvalidationQueueTest {
+
+    private final ScheduledExecutorService remote = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        remote.shutdownNow();
+    }
+
+    private static AuthData data(String stream) {
+        AuthData data = new AuthData();
+        data.setUsername("user");
+        data.setPassword("pass");
+        data.setStreamID(stream);
+        return data;
+    }
+
+    private static CompletableFuture<?> failed() {
+        CompletableFuture<?> future = new CompletableFuture<>();
+        future.completeExceptionally(new IOException("unavailable"));
+        return future;
+    }
+
+    @Test
+    public void testSendsAndMerges() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        InvalidationQueue queue = new InvalidationQueue(10, 10, 0, 0L, data -> {
+            sent.add(data.getStreamID());
+            return CompletableFuture.completedFuture(null);
+        }, null);
+        assertTrue(queue.offer(data("a")));
+        assertTrue(queue.offer(data("a")));
+        assertTrue(queue.offer(data("b")));
+        queue.close(1000L);
+        assertEquals(2, sent.size());
+        assertEquals(2L, queue.getSent());
+        assertEquals(1L, queue.getMerged());
+    }
+
+    @Test
+    public void testRetriesRespectMaxSize() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        InvalidationQueue queue = new InvalidationQueue(2, 2, 5, 60000L, data -> {
+            calls.incrementAndGet();
+            return failed();
+        }, null);
+        queue.offer(data("a"));
+        queue.offer(data("b"));
+        // wait for the drain, the failed items are due for a retry in a minute
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (queue.getRetries() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, queue.size());
+        // the queue is full of retries, so new invalidations are dropped
+        assertTrue(!queue.offer(data("c")));
+        assertEquals(2, queue.size());
+        queue.close(1000L);
+        // flushed without retry on close
+        assertEquals(3L, queue.getDropped());
+    }
+
+    @Test
+    public void testRetryDroppedWhenQueueFilled() throws Exception {
+        CompletableFuture<?> first = new CompletableFuture<>();
+        InvalidationQueue queue = new InvalidationQueue(1, 1, 5, 60000L, data -> "a".equals(data.getStreamID()) ? first
+                : CompletableFuture.completedFuture(null), null);
+        queue.offer(data("a"));
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (queue.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // "a" is in flight, fill its place
+        assertTrue(queue.offer(data("b")));
+        first.completeExceptionally(new IOException("unavailable"));
+        assertEquals(1, queue.size());
+        assertEquals(1L, queue.getDropped());
+        assertEquals(0L, queue.getRetries());
+        queue.close(1000L);
+    }
+
+    @Test
+    public void testCloseAwaitsInFlight() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        InvalidationQueue queue = new InvalidationQueue(10, 10, 5, 0L, data -> {
+            calls.incrementAndGet();
+            // the remote server answers with an error after a while
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            remote.schedule(() -> future.completeExceptionally(new IOException("unavailable")), 300L, TimeUnit.MILLISECONDS);
+            return future;
+        }, null);
+        queue.offer(data("a"));
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (calls.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        queue.close(2000L);
+        // the in-flight send was awaited, and failing after close it was dropped, not re-queued
+        assertEquals(1L, queue.getDropped());
+        assertEquals(0L, queue.getRetries());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testInFlightLimit() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean answering = new AtomicBoolean();
+        List<CompletableFuture<Object>> outstanding = new CopyOnWriteArrayList<>();
+        InvalidationQueue queue = new InvalidationQueue(100, 1, 0, 0L, data -> {
+            calls.incrementAndGet();
+            if (answering.get()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            outstanding.add(future);
+            return future;
+        }, null);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(data("s" + i));
+        }
+        // a drain every 200ms, only 4 may be outstanding
+        Thread.sleep(1500L);
+        assertEquals(4, calls.get());
+        assertEquals(6, queue.size());
+        answering.set(true);
+        outstanding.forEach(future -> future.complete(null));
+        queue.close(2000L);
+        assertEquals(10L, queue.getSent());
+    }
+
+    @Test
+    public void testOfferAfterClose() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        InvalidationQueue queue = new InvalidationQueue(10, 10, 0, 0L, data -> {
+            sent.add(data.getStreamID());
+            return CompletableFuture.completedFuture(null);
+        }, null);
+        assertTrue(queue.offer(data("a")));
+        queue.close(1000L);
+        assertFalse(queue.offer(data("b")));
+        assertEquals(0, queue.size());
+        assertEquals(1L, queue.getDropped());
+        assertEquals(List.of("a"), sent);
+    }
+
+}
@@ -0,0 +1,191 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.breaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.breaker.CircuitBreaker.State;
+
+/**
+ * State machine of the circuit breaker: opening on the failure or slow call
+ * rate, the single half-open probe, and closing again.
+ */
+public class CircuitBreakerTest {
+
+    /**
+     * Window of 10 calls, opening at 50% failures or 50% calls of 100ms or more.
+     */
+    private static CircuitBreaker breaker(long openDuration) {
+        return new CircuitBreaker("test", 10, 50, 100L, 50, openDuration);
+    }
+
+    private static CircuitBreaker opened(long openDuration) {
+        CircuitBreaker breaker = breaker(openDuration);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure(1L);
+        }
+        assertEquals(State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker breaker = breaker(60000L);
+        breaker.onSuccess(1L);
+        breaker.onSuccess(1L);
+        breaker.onFailure(1L);
+        breaker.onFailure(1L);
+        // half the window must be recorded before the rate is considered
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(50f, breaker.getFailureRate(), 0f);
+        breaker.onFailure(1L);
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        CircuitBreaker breaker = breaker(60000L);
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(i < 2 ? 150L : 10L);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(50f, breaker.getSlowCallRate(), 0f);
+        breaker.onSuccess(100L);
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testStaysClosedBelowThresholds() {
+        CircuitBreaker breaker = breaker(60000L);
+        for (int i = 0; i < 100; i++) {
+            // one failure and one slow call in every five calls
+            if (i % 5 == 0) {
+                breaker.onFailure(1L);
+            } else if (i % 5 == 1) {
+                breaker.onSuccess(500L);
+            } else {
+                breaker.onSuccess(1L);
+            }
+            assertEquals(State.CLOSED, breaker.getState());
+        }
+        assertEquals(20f, breaker.getFailureRate(), 0f);
+        assertEquals(20f, breaker.getSlowCallRate(), 0f);
+    }
+
+    @Test
+    public void testOldOutcomesLeaveWindow() {
+        CircuitBreaker breaker = breaker(60000L);
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(1L);
+            breaker.onSuccess(1L);
+            breaker.onSuccess(1L);
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess(1L);
+        }
+        assertEquals(0f, breaker.getFailureRate(), 0f);
+    }
+
+    @Test
+    public void testProbeClosesBreaker() throws Exception {
+        CircuitBreaker breaker = opened(50L);
+        assertFalse(breaker.tryAcquire());
+        Thread.sleep(80L);
+        // a single probe is let through
+        assertTrue(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(1L);
+        assertEquals(State.CLOSED, breaker.getState());
+        assertEquals(0f, breaker.getFailureRate(), 0f);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testFailedProbeReopens() throws Exception {
+        CircuitBreaker breaker = opened(50L);
+        Thread.sleep(80L);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure(1L);
+        assertEquals(State.OPEN, breaker.getState());
+        // the open duration starts over
+        assertFalse(breaker.tryAcquire());
+        Thread.sleep(80L);
+        assertTrue(breaker.tryAcquire());
+        // a slow probe counts as a failure
+        breaker.onSuccess(100L);
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testSingleProbeUnderContention() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                CircuitBreaker breaker = opened(0L);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return breaker.tryAcquire();
+                    }));
+                }
+                start.countDown();
+                int permitted = 0;
+                for (Future<Boolean> future : futures) {
+                    if (future.get(10, TimeUnit.SECONDS)) {
+                        permitted++;
+                    }
+                }
+                assertEquals(1, permitted);
+                assertEquals(State.HALF_OPEN, breaker.getState());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
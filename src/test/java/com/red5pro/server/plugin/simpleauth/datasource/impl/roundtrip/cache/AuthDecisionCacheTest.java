@@ -0,0 +1,129 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
+
+/**
+ * Expiry, eviction and statistics of the decision cache.
+ */
+public class AuthDecisionCacheTest {
+
+    private static AuthResult result(boolean allowed, long ttl) {
+        return new AuthResult(allowed, null, ttl, null);
+    }
+
+    @Test
+    public void testSeparateAllowAndDenyTtl() throws Exception {
+        AuthDecisionCache cache = new AuthDecisionCache(100, 60000L, 50L, 0L);
+        AuthResult allowed = result(true, -1L);
+        AuthResult denied = result(false, -1L);
+        cache.put("allowed", allowed);
+        cache.put("denied", denied);
+        assertSame(allowed, cache.get("allowed"));
+        assertSame(denied, cache.get("denied"));
+        Thread.sleep(100L);
+        assertSame(allowed, cache.get("allowed"));
+        assertNull(cache.get("denied"));
+        assertEquals(3L, cache.getHits());
+        assertEquals(1L, cache.getMisses());
+        assertEquals(1L, cache.getExpirations());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoteTtlOverrides() throws Exception {
+        AuthDecisionCache cache = new AuthDecisionCache(100, 60000L, 50L, 0L);
+        // ttl in seconds from the remote server, zero meaning do not cache
+        cache.put("uncached", result(true, 0L));
+        cache.put("denied", result(false, 60L));
+        cache.put("allowed", result(true, 1L));
+        assertNull(cache.get("uncached"));
+        Thread.sleep(100L);
+        assertNotNull(cache.get("denied"));
+        Thread.sleep(1000L);
+        assertNull(cache.get("allowed"));
+        assertNotNull(cache.get("denied"));
+        assertEquals(2L, cache.getHits());
+        assertEquals(2L, cache.getMisses());
+    }
+
+    @Test
+    public void testStaleRetention() throws Exception {
+        AuthDecisionCache cache = new AuthDecisionCache(100, 50L, 50L, 60000L);
+        AuthResult allowed = result(true, -1L);
+        cache.put("allowed", allowed);
+        Thread.sleep(100L);
+        // expired, but retained for the stale-cache policy
+        assertNull(cache.get("allowed"));
+        assertSame(allowed, cache.getStale("allowed"));
+        assertEquals(0L, cache.getExpirations());
+        assertNull(cache.getStale("unknown"));
+    }
+
+    @Test
+    public void testSizeEviction() {
+        AuthDecisionCache cache = new AuthDecisionCache(10, 60000L, 60000L, 0L);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, result(true, 100L + i));
+        }
+        assertEquals(10, cache.size());
+        assertEquals(0L, cache.getEvictions());
+        // overflowing trims to 90% of the maximum, evicting those closest to expiry
+        cache.put("key10", result(true, 100L + 10));
+        assertEquals(9, cache.size());
+        assertEquals(2L, cache.getEvictions());
+        assertNull(cache.get("key0"));
+        assertNull(cache.get("key1"));
+        for (int i = 2; i <= 10; i++) {
+            assertNotNull(cache.get("key" + i));
+        }
+        assertEquals(9L, cache.getHits());
+        assertEquals(2L, cache.getMisses());
+    }
+
+    @Test
+    public void testExpiredPurgedBeforeEviction() throws Exception {
+        AuthDecisionCache cache = new AuthDecisionCache(4, 60000L, 50L, 0L);
+        cache.put("denied1", result(false, -1L));
+        cache.put("denied2", result(false, -1L));
+        cache.put("allowed1", result(true, -1L));
+        cache.put("allowed2", result(true, -1L));
+        Thread.sleep(100L);
+        cache.put("allowed3", result(true, -1L));
+        assertEquals(3, cache.size());
+        assertEquals(2L, cache.getExpirations());
+        assertEquals(0L, cache.getEvictions());
+    }
+
+}
@@ -0,0 +1,95 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.cluster;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClusterPasswordTest {
+
+    private Path dir;
+
+    private Path file;
+
+    static void write(Path file, String password) throws IOException {
+        String xml = "<beans><bean id=\"clusterConfig\" class=\"com.red5pro.cluster.ClusterConfiguration\">"
+                + "<property name=\"password\" value=\"" + password + "\"/></bean></beans>";
+        Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("cluster");
+        file = dir.resolve("cluster.xml");
+        write(file, "changeme");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testMatches() {
+        ClusterPassword password = new ClusterPassword(file);
+        password.start();
+        try {
+            assertTrue(password.matches("changeme"));
+            assertFalse(password.matches("changeMe"));
+            assertFalse(password.matches(null));
+        } finally {
+            password.stop();
+        }
+    }
+
+    @Test
+    public void testReloadsOnChange() throws Exception {
+        ClusterPassword password = new ClusterPassword(file);
+        password.start();
+        try {
+            write(file, "rotated");
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (!password.matches("rotated") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(password.matches("rotated"));
+            assertFalse(password.matches("changeme"));
+        } finally {
+            password.stop();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthData;
+import com.red5pro.server.plugin.simpleauth.datasource.impl.roundtrip.model.AuthResult;
+
+/**
+ * Checks the streaming codec against the Gson output it replaced.
+ */
+public class AuthCodecTest {
+
+    private static AuthData data(String username, String password) {
+        AuthData data = new AuthData();
+        data.setType("publisher");
+        data.setUsername(username);
+        data.setPassword(password);
+        data.setStreamID("live/stream1");
+        return data;
+    }
+
+    @Test
+    public void testEncodeMatchesGson() {
+        Gson gson = new Gson();
+        AuthData[] cases = { data("alice", "secret"), data("björk ☃", "p\"w\\x</script>"), data(null, null) };
+        for (AuthData data : cases) {
+            String encoded = new String(AuthCodec.encode(data), StandardCharsets.UTF_8);
+            assertEquals(gson.toJsonTree(data), gson.fromJson(encoded, JsonElement.class));
+        }
+    }
+
+    @Test
+    public void testBufferReusedBetweenCalls() {
+        String first = new String(AuthCodec.encode(data("a-rather-long-username", "pw")), StandardCharsets.UTF_8);
+        String second = new String(AuthCodec.encode(data("b", "pw")), StandardCharsets.UTF_8);
+        assertTrue(first.contains("a-rather-long-username"));
+        assertEquals("{\"type\":\"publisher\",\"username\":\"b\",\"password\":\"pw\",\"streamID\":\"live/stream1\"}", second);
+    }
+
+    @Test
+    public void testEncodeList() {
+        List<AuthData> items = Arrays.asList(data("a", "1"), data("b", "2"));
+        String encoded = new String(AuthCodec.encode(items), StandardCharsets.UTF_8);
+        assertEquals(new Gson().toJsonTree(items), new Gson().fromJson(encoded, JsonElement.class));
+    }
+
+    @Test
+    public void testDecodeResult() throws IOException {
+        byte[] body = "{\"result\":true,\"url\":\"rtmp://hé/live\",\"extra\":{\"a\":[1]},\"ttl\":30}".getBytes(StandardCharsets.UTF_8);
+        AuthResult result = AuthCodec.decodeResult(body);
+        assertTrue(result.isResult());
+        assertEquals("rtmp://hé/live", result.getUrl());
+        assertEquals(30L, result.getTtl());
+    }
+
+    @Test
+    public void testDecodeResultsAndStringResult() throws IOException {
+        byte[] body = "[{\"result\":\"true\"},{\"result\":false}]".getBytes(StandardCharsets.UTF_8);
+        List<AuthResult> results = AuthCodec.decodeResults(body);
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).isResult());
+        assertFalse(results.get(1).isResult());
+        assertNull(results.get(1).getUrl());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformed() throws IOException {
+        AuthCodec.decodeResult("[1,2]".getBytes(StandardCharsets.UTF_8));
+    }
+
+}
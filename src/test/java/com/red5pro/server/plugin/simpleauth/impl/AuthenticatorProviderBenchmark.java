@@ -0,0 +1,177 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.red5.server.api.IConnection;
+
+import com.red5pro.server.plugin.simpleauth.AuthenticatorType;
+import com.red5pro.server.plugin.simpleauth.interfaces.ISimpleAuthAuthenticator;
+import com.red5pro.server.so.ISharedObjectCapableConnection;
+import com.red5pro.server.stream.mpegts.IMPEGTSConnection;
+import com.red5pro.server.stream.restreamer.IConnectorShell;
+import com.red5pro.server.stream.rtsp.IRTSPConnection;
+import com.red5pro.server.stream.srt.ISRTConnection;
+import com.red5pro.server.stream.webrtc.IWebRTCConnection;
+
+/**
+ * Cost of selecting the authenticator for a connection, per connection type,
+ * with the former chain of type checks and with the per-class dispatch table.
+ * The `mixed` type cycles through all the connection types, as on a server
+ * taking every kind of connection. The connection classes are never
+ * instantiated, dispatch only depends on the class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticatorProviderBenchmark {
+
+    abstract static class RTMPMinaConnection implements IConnection {
+    }
+
+    abstract static class RTSPConnection implements IRTSPConnection {
+    }
+
+    abstract static class WebRTCConnection implements IWebRTCConnection {
+    }
+
+    abstract static class MPEGTSConnection implements IMPEGTSConnection {
+    }
+
+    abstract static class SRTConnection implements ISRTConnection {
+    }
+
+    abstract static class ConnectorShell implements IConnectorShell, IConnection {
+    }
+
+    abstract static class ClusterConnection implements ISharedObjectCapableConnection, IConnection {
+    }
+
+    abstract static class UnknownConnection implements IConnection {
+    }
+
+    private static final Class<?>[] CLASSES = { RTMPMinaConnection.class, RTSPConnection.class, WebRTCConnection.class,
+            MPEGTSConnection.class, SRTConnection.class, ConnectorShell.class, ClusterConnection.class, UnknownConnection.class };
+
+    @Param({ "mixed", "RTMP", "RTSP", "RTC", "MPEGTS", "SRT", "CONNECTOR", "SHARED_OBJECT", "UNKNOWN" })
+    public String type;
+
+    private AuthenticatorProvider provider;
+
+    private ISimpleAuthAuthenticator[] authenticators;
+
+    private Class<? extends IConnection>[] classes;
+
+    private int next;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() {
+        provider = new AuthenticatorProvider();
+        provider.setEnabled(true);
+        provider.initialize();
+        authenticators = new ISimpleAuthAuthenticator[AuthenticatorType.values().length];
+        for (AuthenticatorType authenticatorType : AuthenticatorType.values()) {
+            authenticators[authenticatorType.ordinal()] = provider.getAuthenticator(authenticatorType);
+        }
+        for (Class<?> connectionClass : CLASSES) {
+            if (chain(connectionClass) != provider.getAuthenticator(connectionClass.asSubclass(IConnection.class))) {
+                throw new IllegalStateException("Dispatch differs from the type checks for " + connectionClass);
+            }
+        }
+        if ("mixed".equals(type)) {
+            classes = (Class<? extends IConnection>[]) CLASSES;
+        } else {
+            String[] types = { "RTMP", "RTSP", "RTC", "MPEGTS", "SRT", "CONNECTOR", "SHARED_OBJECT", "UNKNOWN" };
+            for (int i = 0; i < types.length; i++) {
+                if (types[i].equals(type)) {
+                    classes = new Class[] { CLASSES[i] };
+                }
+            }
+        }
+    }
+
+    private Class<? extends IConnection> nextClass() {
+        Class<? extends IConnection>[] c = classes;
+        int index = next++;
+        return c[(index & Integer.MAX_VALUE) % c.length];
+    }
+
+    /**
+     * The checks formerly made for every connection, with all protocols secured.
+     */
+    private ISimpleAuthAuthenticator chain(Class<?> connectionClass) {
+        if (IRTSPConnection.class.isAssignableFrom(connectionClass)) {
+            return authenticators[AuthenticatorType.RTSP.ordinal()];
+        } else if (IWebRTCConnection.class.isAssignableFrom(connectionClass)) {
+            return authenticators[AuthenticatorType.RTC.ordinal()];
+        } else if (IMPEGTSConnection.class.isAssignableFrom(connectionClass)) {
+            return authenticators[AuthenticatorType.MPEGTS.ordinal()];
+        } else if (ISRTConnection.class.isAssignableFrom(connectionClass)) {
+            return authenticators[AuthenticatorType.SRT.ordinal()];
+        } else if (IConnectorShell.class.isAssignableFrom(connectionClass)) {
+            return authenticators[AuthenticatorType.HAPPY.ordinal()];
+        } else if (connectionClass.getName().contains("RTMP")) {
+            return authenticators[AuthenticatorType.RTMP.ordinal()];
+        } else if (ISharedObjectCapableConnection.class.isAssignableFrom(connectionClass)) {
+            return authenticators[AuthenticatorType.HAPPY.ordinal()];
+        }
+        return authenticators[AuthenticatorType.GRUMPY.ordinal()];
+    }
+
+    @Benchmark
+    public ISimpleAuthAuthenticator typeChecks() {
+        return chain(nextClass());
+    }
+
+    @Benchmark
+    public ISimpleAuthAuthenticator dispatchTable() {
+        return provider.getAuthenticator(nextClass());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AuthenticatorProviderBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,263 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.red5.server.api.IConnection;
+
+import com.red5pro.server.plugin.simpleauth.Configuration;
+import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
+import com.red5pro.server.plugin.simpleauth.interfaces.IUsernameSource;
+import com.red5pro.server.stream.webrtc.IWebRTCConnection;
+
+/**
+ * Checks that the validator reported by the provider is the one its
+ * authenticators use, also while it is reconfigured under load, and that the
+ * username prefilter stays registered across reconfiguration.
+ */
+public class AuthenticatorProviderTest {
+
+    /**
+     * Validator recording the calls it answers.
+     */
+    private static final class RecordingValidator implements IAuthenticationValidator {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public boolean onConnectAuthenticate(String username, String password, Object[] rest) {
+            calls.incrementAndGet();
+            return true;
+        }
+
+    }
+
+    /**
+     * Validator listing a fixed set of usernames.
+     */
+    private static final class ListingValidator implements IAuthenticationValidator, IUsernameSource {
+
+        private final List<String> usernames;
+
+        ListingValidator(List<String> usernames) {
+            this.usernames = usernames;
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public boolean onConnectAuthenticate(String username, String password, Object[] rest) {
+            return usernames.contains(username);
+        }
+
+        @Override
+        public void forEachUsername(Consumer<String> action) {
+            usernames.forEach(action);
+        }
+
+        @Override
+        public long getUsernamesVersion() {
+            return 0L;
+        }
+
+    }
+
+    private static IConnection webRtcConnection() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("username", "alice");
+        params.put("password", "secret");
+        return (IConnection) Proxy.newProxyInstance(AuthenticatorProviderTest.class.getClassLoader(),
+                new Class<?>[] { IWebRTCConnection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getConnectParams":
+                        return params;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "WebRTCConnection";
+                    default:
+                        Class<?> type = method.getReturnType();
+                        return (type == boolean.class) ? Boolean.FALSE : (type.isPrimitive() && type != void.class) ? 0 : null;
+                    }
+                });
+    }
+
+    private static Configuration configuration(IAuthenticationValidator validator, boolean rtmp) {
+        Configuration config = new Configuration();
+        config.setActive(true);
+        config.setValidator(validator);
+        config.setRtmp(rtmp);
+        config.setRtc(true);
+        return config;
+    }
+
+    @Test
+    public void testValidatorPublishedWithAuthenticators() {
+        RecordingValidator first = new RecordingValidator();
+        RecordingValidator second = new RecordingValidator();
+        AuthenticatorProvider provider = new AuthenticatorProvider(configuration(first, true));
+        assertNull(provider.getValidator());
+        provider.initialize();
+        assertSame(first, provider.getValidator());
+        IConnection connection = webRtcConnection();
+        assertTrue(provider.getAuthenticator(connection).authenticate(connection, new Object[0]));
+        assertEquals(1, first.calls.get());
+        // a new validator is reported only together with authenticators using it
+        provider.setValidator(second);
+        assertSame(second, provider.getValidator());
+        assertTrue(provider.getAuthenticator(connection).authenticate(connection, new Object[0]));
+        assertEquals(1, first.calls.get());
+        assertEquals(1, second.calls.get());
+        provider.close();
+    }
+
+    @Test
+    public void testPrefilterRegisteredAfterReconfigure() throws Exception {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName on = new ObjectName(
+                "com.red5pro.server.plugin.simpleauth:type=UsernamePrefilter,name=" + ObjectName.quote("reconfigured"));
+        Configuration config = configuration(new ListingValidator(List.of("alice")), true);
+        config.setUsernamePrefilter(true);
+        AuthenticatorProvider provider = new AuthenticatorProvider(config);
+        provider.setName("reconfigured");
+        provider.initialize();
+        assertTrue(mbs.isRegistered(on));
+        assertEquals(1, mbs.getAttribute(on, "UsernameCount"));
+        // the replacement takes over the registration of the prefilter it replaces
+        config.setValidator(new ListingValidator(List.of("alice", "bob")));
+        provider.reconfigure(config);
+        assertTrue(mbs.isRegistered(on));
+        assertEquals(2, mbs.getAttribute(on, "UsernameCount"));
+        provider.setValidator(new ListingValidator(List.of("alice", "bob", "carol")));
+        assertTrue(mbs.isRegistered(on));
+        assertEquals(3, mbs.getAttribute(on, "UsernameCount"));
+        provider.close();
+        assertFalse(mbs.isRegistered(on));
+    }
+
+    @Test
+    public void testEnabledReportsSnapshot() {
+        AuthenticatorProvider provider = new AuthenticatorProvider(configuration(new RecordingValidator(), true));
+        assertTrue(provider.isEnabled());
+        provider.initialize();
+        provider.setEnabled(false);
+        assertFalse(provider.isEnabled());
+        IConnection connection = webRtcConnection();
+        // disabled lets everyone through without asking the validator
+        assertTrue(provider.getAuthenticator(connection) instanceof PassThruAuthenticator);
+        provider.close();
+    }
+
+    @Test
+    public void testReconfigureUnderLoad() throws Exception {
+        RecordingValidator first = new RecordingValidator();
+        RecordingValidator second = new RecordingValidator();
+        Configuration[] configurations = { configuration(first, true), configuration(second, false) };
+        AuthenticatorProvider provider = new AuthenticatorProvider(configurations[0]);
+        provider.initialize();
+        int readers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(readers);
+        AtomicInteger authentications = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < readers; i++) {
+                futures.add(executor.submit(() -> {
+                    IConnection connection = webRtcConnection();
+                    started.countDown();
+                    while (running.get()) {
+                        IAuthenticationValidator validator = provider.getValidator();
+                        assertTrue(validator == first || validator == second);
+                        assertTrue(provider.getAuthenticator(connection).authenticate(connection, new Object[0]));
+                        authentications.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                started.await();
+                for (int i = 0; i < 2000; i++) {
+                    Configuration config = configurations[i & 1];
+                    provider.reconfigure(config);
+                    assertSame(config.getValidator(), provider.getValidator());
+                    provider.setValidator((i & 1) == 0 ? second : first);
+                    assertSame((i & 1) == 0 ? second : first, provider.getValidator());
+                }
+                running.set(false);
+                return null;
+            }));
+            for (Future<?> future : futures) {
+                // rethrows the assertion errors of the workers
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        // every authentication went to one of the configured validators
+        assertEquals(authentications.get(), first.calls.get() + second.calls.get());
+        int before = second.calls.get();
+        provider.reconfigure(configurations[1]);
+        IConnection connection = webRtcConnection();
+        provider.getAuthenticator(connection).authenticate(connection, new Object[0]);
+        assertEquals(before + 1, second.calls.get());
+        provider.close();
+    }
+
+}
@@ -0,0 +1,236 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.servlet;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.red5pro.server.plugin.simpleauth.interfaces.IAuthenticationValidator;
+
+/**
+ * Cost of the request handling in AuthServlet ahead of validation, over HLS and
+ * DASH playlist and segment requests: deriving the stream name from the uri
+ * with the former regex split and with the character scan, and extracting the
+ * parameters with the former getParameterNames loop, query string loop and map
+ * copy, and with the single pass over the parameter map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthServletParametersBenchmark {
+
+    private static final String[] URIS = { "/live/stream1.m3u8", "/live/stream1_720p.m3u8", "/live/stream1_720p_00042.ts",
+            "/live/stream1_1080p_00043.ts", "/live/stream1.mpd", "/live/stream1_init-stream0.m4s", "/live/stream1_chunk-stream0-00017.m4s",
+            "/live/stream1_chunk-stream1-00017.m4s" };
+
+    private HttpServletRequest[] requests;
+
+    private int next;
+
+    /**
+     * Request over a parameter map, as a container parses the query string.
+     */
+    private static HttpServletRequest request(String uri, String... parameters) {
+        Map<String, String[]> map = new LinkedHashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            map.put(parameters[i], new String[] { parameters[i + 1] });
+        }
+        Map<String, String[]> view = Collections.unmodifiableMap(map);
+        HttpServletRequest unused = (HttpServletRequest) Proxy.newProxyInstance(AuthServletParametersBenchmark.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> null);
+        return new HttpServletRequestWrapper(unused) {
+
+            @Override
+            public String getRequestURI() {
+                return uri;
+            }
+
+            @Override
+            public String getParameter(String name) {
+                return AuthServlet.firstValue(view.get(name));
+            }
+
+            @Override
+            public Enumeration<String> getParameterNames() {
+                return Collections.enumeration(view.keySet());
+            }
+
+            @Override
+            public Map<String, String[]> getParameterMap() {
+                return view;
+            }
+
+        };
+    }
+
+    @Setup
+    public void setup() {
+        requests = new HttpServletRequest[URIS.length * 2];
+        for (int i = 0; i < URIS.length; i++) {
+            // hls.js style credentials plus low latency HLS directives
+            requests[i * 2] = request(URIS[i], "username", "alice", "password", "secret", "type", "subscriber", "_HLS_msn", "42",
+                    "_HLS_part", "3");
+            // dash.js style token
+            requests[i * 2 + 1] = request(URIS[i], "token", "eyJhbGciOiJIUzI1NiJ9.c3RyZWFtMQ.c2lnbmF0dXJl", "type", "subscriber");
+        }
+        for (String uri : URIS) {
+            if (!legacyStreamNameOf(uri).equals(AuthServlet.streamNameOf(uri))) {
+                throw new IllegalStateException("Stream names differ for " + uri);
+            }
+        }
+    }
+
+    private HttpServletRequest nextRequest() {
+        return requests[next++ & (requests.length - 1)];
+    }
+
+    private static String legacyStreamNameOf(String uri) {
+        String strippedURI = uri.substring(uri.lastIndexOf('/') + 1);
+        String[] parts = strippedURI.split("\\.|_");
+        return parts[0];
+    }
+
+    @Benchmark
+    public String streamNameSplit() {
+        return legacyStreamNameOf(nextRequest().getRequestURI());
+    }
+
+    @Benchmark
+    public String streamNameScan() {
+        return AuthServlet.streamNameOf(nextRequest().getRequestURI());
+    }
+
+    @Benchmark
+    public void parametersLegacy(Blackhole bh) {
+        HttpServletRequest httpRequest = nextRequest();
+        String username = null, password = null, token = "", type = "subscriber", streamName = null;
+        Iterator<String> paramNames = httpRequest.getParameterNames().asIterator();
+        while (paramNames.hasNext()) {
+            String paramName = paramNames.next();
+            if (IAuthenticationValidator.TOKEN.equals(paramName)) {
+                token = httpRequest.getParameter(paramName);
+            } else if (IAuthenticationValidator.USERNAME.equals(paramName)) {
+                username = httpRequest.getParameter(paramName);
+            } else if (IAuthenticationValidator.PASSWORD.equals(paramName)) {
+                password = httpRequest.getParameter(paramName);
+            } else if ("type".equals(paramName)) {
+                type = httpRequest.getParameter(paramName);
+            } else if ("streamName".equals(paramName)) {
+                streamName = httpRequest.getParameter(paramName);
+            }
+        }
+        // the query string was read again once credentials were found
+        Map<String, String[]> qsMap = httpRequest.getParameterMap();
+        for (Entry<String, String[]> entry : qsMap.entrySet()) {
+            String key = entry.getKey();
+            String[] val = entry.getValue();
+            if (IAuthenticationValidator.TOKEN.equals(key)) {
+                token = val[0];
+            } else if (IAuthenticationValidator.USERNAME.equals(key)) {
+                username = val[0];
+            } else if (IAuthenticationValidator.PASSWORD.equals(key)) {
+                password = val[0];
+            } else if ("type".equals(key)) {
+                type = val[0];
+            } else if ("streamName".equals(key)) {
+                streamName = val[0];
+            }
+        }
+        // and copied for the HTTPAuthenticator
+        Map<String, String> paramsMap = new HashMap<>();
+        httpRequest.getParameterNames().asIterator().forEachRemaining((name) -> {
+            paramsMap.put(name, httpRequest.getParameter(name));
+        });
+        bh.consume(username);
+        bh.consume(password);
+        bh.consume(token);
+        bh.consume(type);
+        bh.consume(streamName);
+        bh.consume(paramsMap);
+    }
+
+    @Benchmark
+    public void parametersSinglePass(Blackhole bh) {
+        HttpServletRequest httpRequest = nextRequest();
+        String username = null, password = null, token = "", type = "subscriber", streamName = null;
+        Map<String, String[]> parameterMap = httpRequest.getParameterMap();
+        for (Entry<String, String[]> entry : parameterMap.entrySet()) {
+            String paramName = entry.getKey();
+            String value = AuthServlet.firstValue(entry.getValue());
+            if (IAuthenticationValidator.TOKEN.equals(paramName)) {
+                token = value;
+            } else if (IAuthenticationValidator.USERNAME.equals(paramName)) {
+                username = value;
+            } else if (IAuthenticationValidator.PASSWORD.equals(paramName)) {
+                password = value;
+            } else if ("type".equals(paramName)) {
+                type = value;
+            } else if ("streamName".equals(paramName)) {
+                streamName = value;
+            }
+        }
+        Map<String, String> paramsMap = new AuthServlet.FirstValueMap(parameterMap);
+        bh.consume(username);
+        bh.consume(password);
+        bh.consume(token);
+        bh.consume(type);
+        bh.consume(streamName);
+        bh.consume(paramsMap);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AuthServletParametersBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
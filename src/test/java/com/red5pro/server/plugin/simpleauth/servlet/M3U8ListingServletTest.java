@@ -0,0 +1,201 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import com.red5pro.plugin.IPluginService;
+
+/**
+ * Cloud listings of the M3U8ListingServlet against listers answering after an
+ * injected latency.
+ */
+public class M3U8ListingServletTest {
+
+    private M3U8ListingServlet servlet;
+
+    private ByteArrayOutputStream body;
+
+    private ServletOutputStream out;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("cloudTimeout", "250");
+        params.put("cloudThreads", "2");
+        servlet = new M3U8ListingServlet();
+        servlet.init((ServletConfig) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ServletConfig.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getInitParameter":
+                            return params.get(args[0]);
+                        case "getInitParameterNames":
+                            return Collections.enumeration(params.keySet());
+                        case "getServletName":
+                            return "playlists";
+                        default:
+                            return null;
+                    }
+                }));
+        body = new ByteArrayOutputStream();
+        out = new ServletOutputStream() {
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+
+        };
+    }
+
+    @After
+    public void tearDown() {
+        servlet.destroy();
+    }
+
+    @Test
+    public void testSlowListerTimesOut() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Map<String, IPluginService> listers = new LinkedHashMap<>();
+        listers.put("S3BucketLister", lister(50, null, "a.m3u8", "b.m3u8"));
+        listers.put("DOBucketLister", lister(10000, interrupted, "c.m3u8"));
+        List<String> timedOut = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        long start = System.nanoTime();
+        servlet.writeCloudListings(listers, "live", out, timedOut, failed);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + elapsed + "ms", elapsed < 2000);
+        assertEquals(Collections.singletonList("DOBucketLister"), timedOut);
+        assertTrue(failed.isEmpty());
+        String json = body.toString(StandardCharsets.UTF_8.name());
+        assertTrue(json, json.contains("\"a.m3u8\"") && json.contains("\"b.m3u8\""));
+        assertTrue(json, !json.contains("c.m3u8"));
+        // the slow lister is cancelled rather than left holding a pool thread
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailingListerIsReported() throws Exception {
+        Map<String, IPluginService> listers = new LinkedHashMap<>();
+        listers.put("S3BucketLister", (path, type) -> {
+            throw new IllegalStateException("bucket not found");
+        });
+        listers.put("GStorageBucketLister", lister(100, null, "g.m3u8"));
+        List<String> timedOut = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        servlet.writeCloudListings(listers, "live", out, timedOut, failed);
+        assertTrue(timedOut.isEmpty());
+        assertEquals(Collections.singletonList("S3BucketLister"), failed);
+        String json = body.toString(StandardCharsets.UTF_8.name());
+        assertEquals("{\"name\":\"g.m3u8\",\"lastModified\":1,\"length\":3,\"url\":\"http://bucket/live/g.m3u8\"}", json);
+    }
+
+    @Test
+    public void testDestroyStopsListing() throws Exception {
+        servlet.destroy();
+        Map<String, IPluginService> listers = new LinkedHashMap<>();
+        listers.put("S3BucketLister", lister(0, null, "a.m3u8"));
+        List<String> timedOut = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        servlet.writeCloudListings(listers, "live", out, timedOut, failed);
+        assertTrue(timedOut.isEmpty());
+        assertEquals(Collections.singletonList("S3BucketLister"), failed);
+        assertEquals(0, body.size());
+    }
+
+    /**
+     * Returns a lister answering with the named playlists after a delay.
+     */
+    private static IPluginService lister(long latency, CountDownLatch interrupted, String... names) {
+        return (path, type) -> {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                if (interrupted != null) {
+                    interrupted.countDown();
+                }
+                return null;
+            }
+            List<Resource> resources = new ArrayList<>();
+            for (String name : names) {
+                resources.add(new ByteArrayResource(new byte[3]) {
+
+                    @Override
+                    public String getFilename() {
+                        return name;
+                    }
+
+                    @Override
+                    public long lastModified() {
+                        return 1L;
+                    }
+
+                    @Override
+                    public URL getURL() throws IOException {
+                        return new URL("http://bucket/" + path + '/' + name);
+                    }
+
+                });
+            }
+            return resources;
+        };
+    }
+
+}
@@ -0,0 +1,108 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.servlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Per-request cost of stateless playback tokens: issuing one, and verifying a
+ * valid token, an expired one which is refused before any HMAC is computed, and
+ * a forged one whose signature does not match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaybackTokensBenchmark {
+
+    private static final String SCOPE = "live";
+
+    private static final String STREAM = "stream1_720p";
+
+    private static final String TYPE = "subscriber";
+
+    private PlaybackTokens tokens;
+
+    private String valid;
+
+    private String expired;
+
+    private String forged;
+
+    @Setup
+    public void setup() {
+        tokens = new PlaybackTokens("benchmark-secret");
+        valid = tokens.issue(SCOPE, STREAM, TYPE, TimeUnit.HOURS.toMillis(1));
+        expired = tokens.issue(SCOPE, STREAM, TYPE, -TimeUnit.HOURS.toMillis(1));
+        // an unexpired token issued for another stream, passed off for this one
+        forged = tokens.issue(SCOPE, "stream2_720p", TYPE, TimeUnit.HOURS.toMillis(1));
+        if (!tokens.verify(valid, SCOPE, STREAM, TYPE) || tokens.verify(expired, SCOPE, STREAM, TYPE)
+                || tokens.verify(forged, SCOPE, STREAM, TYPE)) {
+            throw new IllegalStateException("Unexpected verification result");
+        }
+    }
+
+    @Benchmark
+    public String issue() {
+        return tokens.issue(SCOPE, STREAM, TYPE, 30000L);
+    }
+
+    @Benchmark
+    public boolean verifyValid() {
+        return tokens.verify(valid, SCOPE, STREAM, TYPE);
+    }
+
+    @Benchmark
+    public boolean verifyExpired() {
+        return tokens.verify(expired, SCOPE, STREAM, TYPE);
+    }
+
+    @Benchmark
+    public boolean verifyForged() {
+        return tokens.verify(forged, SCOPE, STREAM, TYPE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PlaybackTokensBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
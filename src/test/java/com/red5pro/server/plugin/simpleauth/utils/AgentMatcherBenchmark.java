@@ -0,0 +1,112 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of checking an RTMP agent string against a 50 entry allow-list with the
+ * former linear scan and with the compiled matcher, both for an agent string
+ * whose decision is cached and for distinct agent strings, more than the cache
+ * holds, which are scanned every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentMatcherBenchmark {
+
+    private static final String AGENT = "FMLE/3.0 (compatible; Lavf58.29.100)";
+
+    private String allowedAgents;
+
+    private AgentMatcher matcher;
+
+    private String[] agents;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < 49; i++) {
+            list.append("Encoder").append(i).append("/1.").append(i % 7).append(';');
+        }
+        // the match is last, the worst case for the linear scan
+        list.append("lavf");
+        allowedAgents = list.toString();
+        matcher = new AgentMatcher(allowedAgents);
+        agents = new String[1024];
+        for (int i = 0; i < agents.length; i++) {
+            agents[i] = "FMLE/3.0 (compatible; Lavf58." + i + ".100)";
+        }
+    }
+
+    private String nextAgent() {
+        return agents[next++ & (agents.length - 1)];
+    }
+
+    @Benchmark
+    public boolean linear() {
+        return AgentMatcherTest.linearMatch(allowedAgents, AGENT);
+    }
+
+    @Benchmark
+    public boolean matcherCached() {
+        return matcher.matches(AGENT);
+    }
+
+    @Benchmark
+    public boolean linearDistinct() {
+        return AgentMatcherTest.linearMatch(allowedAgents, nextAgent());
+    }
+
+    @Benchmark
+    public boolean matcherDistinct() {
+        return matcher.matches(nextAgent());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AgentMatcherBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
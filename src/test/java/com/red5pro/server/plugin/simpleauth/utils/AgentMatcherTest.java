@@ -0,0 +1,105 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the compiled matcher against the linear scan it replaced.
+ */
+public class AgentMatcherTest {
+
+    /**
+     * The check formerly made by the RTMP authenticator, with the root locale.
+     */
+    static boolean linearMatch(String allowedAgents, String agentString) {
+        if (allowedAgents.equals("*")) {
+            return true;
+        }
+        for (String candidate : allowedAgents.split(";")) {
+            if (agentString.toUpperCase(Locale.ROOT).contains(candidate.trim().toUpperCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String random(Random random, String alphabet, int maxLength) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0, length = random.nextInt(maxLength + 1); i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        // includes characters whose upper case is longer (ß, ŉ, ﬀ) or locale dependent (i, ı, İ)
+        String alphabet = "abAB fFsSiIıİßŉﬀ/.0";
+        Random random = new Random(17);
+        for (int round = 0; round < 20000; round++) {
+            String allowed = random(random, alphabet + ";;", 24);
+            AgentMatcher matcher = new AgentMatcher(allowed);
+            for (int i = 0; i < 10; i++) {
+                String agent = random(random, alphabet, 16);
+                assertEquals(allowed + " / " + agent, linearMatch(allowed, agent), matcher.matches(agent));
+                // a second call answers from the cache
+                assertEquals(allowed + " / " + agent, linearMatch(allowed, agent), matcher.matches(agent));
+            }
+        }
+    }
+
+    @Test
+    public void testDefaultLocaleIgnored() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            AgentMatcher matcher = new AgentMatcher("WIN 32;fmle");
+            assertTrue(matcher.matches("win 32 ,11,1,0"));
+            assertTrue(matcher.matches("FMLE/3.0 (compatible; FMSc/1.0)"));
+            assertFalse(matcher.matches("LNX 9,0,124,2"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void testSpecialLists() {
+        assertTrue(new AgentMatcher("*").matches(null));
+        assertTrue(new AgentMatcher("fmle;;wirecast").matches("anything"));
+        assertFalse(new AgentMatcher(null).matches("FMLE/3.0"));
+        assertFalse(new AgentMatcher("fmle").matches(null));
+        assertTrue(new AgentMatcher("strasse").matches("Straße Encoder"));
+    }
+
+}
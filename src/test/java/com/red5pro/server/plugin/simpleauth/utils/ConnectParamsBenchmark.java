@@ -0,0 +1,127 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of reading the credentials out of realistic WebRTC and RTMP connect
+ * params the way the authenticators do, with the former full map copies and
+ * with the lazy view. Run with `-prof gc` to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectParamsBenchmark {
+
+    private Map<String, Object> webrtc;
+
+    private Map<String, Object> rtmp;
+
+    @Setup
+    public void setup() {
+        webrtc = new HashMap<>();
+        webrtc.put("username", "viewer-0042");
+        webrtc.put("password", "s3cr3t%21passw0rd");
+        webrtc.put("token", "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiJ2aWV3ZXIifQ");
+        webrtc.put("streamName", "stream-0042");
+        webrtc.put("app", "live");
+        webrtc.put("host", "origin.example.com");
+        webrtc.put("port", "443");
+        webrtc.put("protocol", "wss");
+        webrtc.put("mediaElementId", "red5pro-subscriber");
+        webrtc.put("subscriptionId", "subscriber-7f3a9c");
+        webrtc.put("iceTransport", "udp");
+        webrtc.put("connectionParams", "%7B%22region%22%3A%22us-east%22%7D");
+        rtmp = new HashMap<>();
+        rtmp.put("app", "live");
+        rtmp.put("flashVer", "FMLE/3.0 (compatible; FMSc/1.0)");
+        rtmp.put("swfUrl", "rtmp://origin.example.com/live");
+        rtmp.put("tcUrl", "rtmp://origin.example.com/live");
+        rtmp.put("type", "nonprivate");
+        rtmp.put("path", "live");
+        rtmp.put("objectEncoding", 0);
+        rtmp.put("queryString", "?username=publisher-0042&password=s3cr3t%21passw0rd&token=eyJhbGciOiJIUzI1NiJ9&region=us-east");
+    }
+
+    private static String credentials(Map<String, Object> map) {
+        if (!map.containsKey("username") || !map.containsKey("password")) {
+            return null;
+        }
+        return String.valueOf(map.get("username")) + String.valueOf(map.get("password"));
+    }
+
+    private static String rtmpCredentials(Map<String, Object> map) {
+        if (map.containsKey("cluster-restreamer-context") && map.containsKey("cluster-restreamer-name")) {
+            return null;
+        }
+        return credentials(map);
+    }
+
+    @Benchmark
+    public String webrtcCopy() {
+        return credentials(ConnectParamsTest.copyDecoded(webrtc));
+    }
+
+    @Benchmark
+    public String webrtcView() {
+        return credentials(ConnectParams.decoded(webrtc));
+    }
+
+    @Benchmark
+    public String rtmpCopy() {
+        return rtmpCredentials(ConnectParamsTest.copyWithQueryString(rtmp));
+    }
+
+    @Benchmark
+    public String rtmpView() {
+        return rtmpCredentials(ConnectParams.withQueryString(rtmp));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConnectParamsBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,182 @@
+//
+// Copyright © 2015 Infrared5, Inc. All rights reserved.
+//
+// The accompanying code comprising examples for use solely in conjunction with Red5 Pro (the "Example Code")
+// is  licensed  to  you  by  Infrared5  Inc.  in  consideration  of  your  agreement  to  the  following
+// license terms  and  conditions.  Access,  use,  modification,  or  redistribution  of  the  accompanying
+// code  constitutes your acceptance of the following license terms and conditions.
+//
+// Permission is hereby granted, free of charge, to you to use the Example Code and associated documentation
+// files (collectively, the "Software") without restriction, including without limitation the rights to use,
+// copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+// persons to whom the Software is furnished to do so, subject to the following conditions:
+//
+// The Software shall be used solely in conjunction with Red5 Pro. Red5 Pro is licensed under a separate end
+// user  license  agreement  (the  "EULA"),  which  must  be  executed  with  Infrared5,  Inc.
+// An  example  of  the EULA can be found on our website at: https://account.red5pro.com/assets/LICENSE.txt.
+//
+// The above copyright notice and this license shall be included in all copies or portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,  INCLUDING  BUT
+// NOT  LIMITED  TO  THE  WARRANTIES  OF  MERCHANTABILITY, FITNESS  FOR  A  PARTICULAR  PURPOSE  AND
+// NONINFRINGEMENT.   IN  NO  EVENT  SHALL INFRARED5, INC. BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+// WHETHER IN  AN  ACTION  OF  CONTRACT,  TORT  OR  OTHERWISE,  ARISING  FROM,  OUT  OF  OR  IN CONNECTION
+// WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+//
+package com.red5pro.server.plugin.simpleauth.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks the lazy parameter view against the map copies the authenticators
+ * used to build, and the cases those copies got wrong.
+ */
+public class ConnectParamsTest {
+
+    /**
+     * The copy formerly made by the RTC, SRT, MPEG-TS and WebSocket
+     * authenticators.
+     */
+    static Map<String, Object> copyDecoded(Map<String, Object> content) {
+        Map<String, Object> map = new HashMap<>();
+        for (Map.Entry<String, Object> pair : content.entrySet()) {
+            String key = pair.getKey();
+            String value;
+            try {
+                value = URLDecoder.decode(String.valueOf(pair.getValue()), StandardCharsets.UTF_8.name());
+            } catch (Exception e) {
+                value = String.valueOf(pair.getValue());
+            }
+            if (key.indexOf("?") == 0) {
+                key = key.replace("?", "");
+            }
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    /**
+     * The copy formerly made by the RTMP authenticator.
+     */
+    static Map<String, Object> copyWithQueryString(Map<String, Object> content) {
+        Map<String, Object> map = new HashMap<>();
+        for (Map.Entry<String, Object> pair : content.entrySet()) {
+            String key = pair.getKey();
+            Object value = pair.getValue();
+            if (key.equals("queryString")) {
+                for (String parameter : String.valueOf(value).split("&")) {
+                    String[] param = parameter.split("=");
+                    String name = param[0];
+                    if (name.indexOf("?") == 0) {
+                        name = name.replace("?", "");
+                    }
+                    map.put(name, param[1]);
+                }
+            }
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    private static Map<String, Object> params(Object... pairs) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put((String) pairs[i], pairs[i + 1]);
+        }
+        return map;
+    }
+
+    private static void assertSameLookups(Map<String, Object> expected, Map<String, Object> view) {
+        for (Map.Entry<String, Object> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue(), view.get(entry.getKey()));
+            assertTrue(entry.getKey(), view.containsKey(entry.getKey()));
+        }
+        assertNull(view.get("missing"));
+        assertFalse(view.containsKey("missing"));
+    }
+
+    @Test
+    public void testDecodedMatchesCopy() {
+        Map<String, Object> connect = params("?username", "alice", "password", "p%40ss+word", "token", "a%2Bb%3D%3D", "streamName",
+                "stream1", "percent", "100%", "empty", "", "number", 42, "nothing", null);
+        Map<String, Object> expected = copyDecoded(connect);
+        assertSameLookups(expected, ConnectParams.decoded(connect));
+        assertEquals(expected, new HashMap<>(ConnectParams.decoded(connect)));
+        assertEquals("p@ss word", ConnectParams.decoded(connect).get("password"));
+    }
+
+    @Test
+    public void testQueryStringMatchesCopy() {
+        Map<String, Object> connect = params("app", "live", "tcUrl", "rtmp://host/live", "queryString",
+                "?username=alice&password=p%40ss&token=abc");
+        Map<String, Object> expected = copyWithQueryString(connect);
+        assertSameLookups(expected, ConnectParams.withQueryString(connect));
+        assertEquals(expected, new HashMap<>(ConnectParams.withQueryString(connect)));
+        // values from the query string are not decoded, as before
+        assertEquals("p%40ss", ConnectParams.withQueryString(connect).get("password"));
+    }
+
+    @Test
+    public void testQueryStringEdgeCases() {
+        Map<String, Object> connect = params("queryString", "?flag&username=alice&token=YWJj==&empty=&&signature=a=b=c");
+        ConnectParams view = ConnectParams.withQueryString(connect);
+        // the old copy failed on a parameter without a value and cut values at the second '='
+        assertEquals("", view.get("flag"));
+        assertTrue(view.containsKey("flag"));
+        assertEquals("alice", view.get("username"));
+        assertEquals("YWJj==", view.get("token"));
+        assertEquals("", view.get("empty"));
+        assertEquals("a=b=c", view.get("signature"));
+        assertNull(view.get("user"));
+        assertNull(view.get(""));
+        Map<String, Object> copy = new HashMap<>(ConnectParams.withQueryString(connect));
+        assertEquals("", copy.get("flag"));
+        assertEquals("a=b=c", copy.get("signature"));
+    }
+
+    @Test
+    public void testPrefixedKeys() {
+        Map<String, Object> connect = params("?username", "alice", "queryString", "?token=abc&password=x");
+        ConnectParams view = ConnectParams.withQueryString(connect);
+        assertEquals("alice", view.get("username"));
+        assertEquals("abc", view.get("token"));
+        assertEquals("x", view.get("password"));
+        assertNull(view.get("?token"));
+        assertEquals("alice", new HashMap<>(ConnectParams.withQueryString(connect)).get("username"));
+    }
+
+    @Test
+    public void testConnectParamsTakePrecedence() {
+        Map<String, Object> connect = params("username", "connect", "?password", "connect", "queryString", "username=query&password=query");
+        ConnectParams view = ConnectParams.withQueryString(connect);
+        assertEquals("connect", view.get("username"));
+        assertEquals("connect", view.get("password"));
+        Map<String, Object> copy = new HashMap<>(ConnectParams.withQueryString(connect));
+        assertEquals("connect", copy.get("username"));
+        assertEquals("connect", copy.get("password"));
+    }
+
+    @Test
+    public void testMaterializeOnWrite() {
+        Map<String, Object> connect = params("username", "alice%21", "queryString", "x=1");
+        ConnectParams view = ConnectParams.decoded(connect);
+        assertEquals("alice!", view.get("username"));
+        view.put("extra", "value");
+        assertEquals("value", view.get("extra"));
+        assertEquals("alice!", view.get("username"));
+        assertEquals(3, view.size());
+        // the connect params are left untouched
+        assertEquals(2, connect.size());
+    }
+
+}